@@ -0,0 +1,14 @@
+package org.knime.knip.newomero.nodes.delete;
+
+import org.knime.core.data.StringValue;
+import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
+import org.knime.core.node.defaultnodesettings.DialogComponentColumnNameSelection;
+
+public class OmeroDeleteNodeDialog extends DefaultNodeSettingsPane {
+
+    @SuppressWarnings("unchecked")
+    public OmeroDeleteNodeDialog() {
+        addDialogComponent(new DialogComponentColumnNameSelection(
+                OmeroDeleteSettings.createUriColumnModel(), "URI Column", 1, StringValue.class));
+    }
+}
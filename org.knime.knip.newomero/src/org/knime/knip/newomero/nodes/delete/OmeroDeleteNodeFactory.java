@@ -0,0 +1,35 @@
+package org.knime.knip.newomero.nodes.delete;
+
+import org.knime.core.node.NodeDialogPane;
+import org.knime.core.node.NodeFactory;
+import org.knime.core.node.NodeView;
+
+public class OmeroDeleteNodeFactory extends NodeFactory<OmeroDeleteNodeModel> {
+
+	@Override
+	public OmeroDeleteNodeModel createNodeModel() {
+		return new OmeroDeleteNodeModel();
+	}
+
+	@Override
+	protected int getNrNodeViews() {
+		return 0;
+	}
+
+	@Override
+	public NodeView<OmeroDeleteNodeModel> createNodeView(int viewIndex,
+			OmeroDeleteNodeModel nodeModel) {
+		return null;
+	}
+
+	@Override
+	protected boolean hasDialog() {
+		return true;
+	}
+
+	@Override
+	protected NodeDialogPane createNodeDialogPane() {
+		return new OmeroDeleteNodeDialog();
+	}
+
+}
@@ -0,0 +1,199 @@
+package org.knime.knip.newomero.nodes.delete;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.DataType;
+import org.knime.core.data.StringValue;
+import org.knime.core.data.append.AppendedColumnRow;
+import org.knime.core.data.def.BooleanCell;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.node.BufferedDataContainer;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeModel;
+import org.knime.core.node.NodeSettingsRO;
+import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.defaultnodesettings.SettingsModel;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.knime.core.node.port.PortObject;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.port.PortType;
+import org.knime.knip.newomero.port.OmeroConnectionInformation;
+import org.knime.knip.newomero.port.OmeroConnectionInformationPortObject;
+import org.knime.knip.newomero.remote.OmeroBulkDelete;
+import org.knime.knip.newomero.remote.OmeroBulkDelete.Result;
+
+/**
+ * Deletes the projects, datasets and images given by the URIs of a column.
+ * All URIs are passed to a single bulk delete, so one request is sent per
+ * type instead of one per row.
+ */
+public class OmeroDeleteNodeModel extends NodeModel {
+
+    /** interval in which the node checks for cancellation while waiting. */
+    private static final long WAIT_MS = 500;
+
+    private final List<SettingsModel> settingsModels = new ArrayList<>();
+
+    private final SettingsModelString uriColumnModel = OmeroDeleteSettings.createUriColumnModel();
+
+    protected OmeroDeleteNodeModel() {
+        super(new PortType[] { OmeroConnectionInformationPortObject.TYPE, BufferedDataTable.TYPE },
+                new PortType[] { BufferedDataTable.TYPE });
+
+        // store settings models
+        settingsModels.add(uriColumnModel);
+    }
+
+    @Override
+    protected PortObject[] execute(final PortObject[] inObjects, final ExecutionContext exec)
+            throws Exception {
+
+        final OmeroConnectionInformation info =
+                ((OmeroConnectionInformationPortObject) inObjects[0])
+                        .getOmeroConnectionInformation();
+        final BufferedDataTable table = (BufferedDataTable) inObjects[1];
+        final DataTableSpec inSpec = table.getDataTableSpec();
+        final int uriIdx = inSpec.findColumnIndex(uriColumnModel.getStringValue());
+
+        final Set<URI> uris = new LinkedHashSet<>();
+        for (final DataRow row : table) {
+            exec.checkCanceled();
+            final URI uri = uri(row, uriIdx);
+            if (uri != null) {
+                uris.add(uri);
+            }
+        }
+
+        exec.setMessage("Deleting " + uris.size() + " objects");
+        final Map<URI, Result> results = uris.isEmpty() ? Collections.emptyMap()
+                : await(OmeroBulkDelete.delete(info, uris), exec);
+
+        final BufferedDataContainer container = exec.createDataContainer(createOutSpec(inSpec));
+        final DataCell missing = DataType.getMissingCell();
+        for (final DataRow row : table) {
+            final URI uri = uri(row, uriIdx);
+            final Result result = uri == null ? null : results.get(uri);
+            if (result == null) {
+                container.addRowToTable(new AppendedColumnRow(row, BooleanCell.FALSE,
+                        row.getCell(uriIdx).isMissing() ? missing : new StringCell("Invalid URI")));
+            } else if (result.isDeleted()) {
+                container.addRowToTable(new AppendedColumnRow(row, BooleanCell.TRUE, missing));
+            } else {
+                setWarningMessage("Some objects could not be deleted: " + result.getMessage());
+                container.addRowToTable(new AppendedColumnRow(row, BooleanCell.FALSE,
+                        new StringCell(result.getMessage())));
+            }
+        }
+        container.close();
+        return new PortObject[] { container.getTable() };
+    }
+
+    /**
+     * Waits for the delete to finish. Canceling the node does not stop the
+     * requests that have already been sent to the server.
+     */
+    private static Map<URI, Result> await(final CompletableFuture<Map<URI, Result>> future,
+            final ExecutionContext exec) throws Exception {
+        while (true) {
+            exec.checkCanceled();
+            try {
+                return future.get(WAIT_MS, TimeUnit.MILLISECONDS);
+            } catch (final TimeoutException e) {
+                // check for cancellation again
+            }
+        }
+    }
+
+    /**
+     * @return the URI of the row or null if the cell is missing or no URI
+     */
+    private static URI uri(final DataRow row, final int idx) {
+        if (row.getCell(idx).isMissing()) {
+            return null;
+        }
+        try {
+            return new URI(((StringValue) row.getCell(idx)).getStringValue().trim());
+        } catch (final URISyntaxException e) {
+            return null;
+        }
+    }
+
+    private DataTableSpec createOutSpec(final DataTableSpec inSpec) {
+        final DataColumnSpec[] specs = {
+                new DataColumnSpecCreator("Deleted", BooleanCell.TYPE).createSpec(),
+                new DataColumnSpecCreator("Delete Message", StringCell.TYPE).createSpec() };
+        return new DataTableSpec(inSpec, new DataTableSpec(specs));
+    }
+
+    @Override
+    protected PortObjectSpec[] configure(final PortObjectSpec[] inSpecs)
+            throws InvalidSettingsException {
+        if (inSpecs[0] == null) {
+            throw new InvalidSettingsException("An Omero Connection is required!");
+        }
+        final DataTableSpec inSpec = (DataTableSpec) inSpecs[1];
+        if (inSpec.findColumnIndex(uriColumnModel.getStringValue()) < 0) {
+            throw new InvalidSettingsException("Please select the column with the URIs");
+        }
+
+        return new PortObjectSpec[] { createOutSpec(inSpec) };
+    }
+
+    @Override
+    protected void saveSettingsTo(final NodeSettingsWO settings) {
+        settingsModels.forEach(m -> m.saveSettingsTo(settings));
+    }
+
+    @Override
+    protected void validateSettings(final NodeSettingsRO settings) throws InvalidSettingsException {
+        for (final SettingsModel m : settingsModels) {
+            m.validateSettings(settings);
+        }
+    }
+
+    @Override
+    protected void loadValidatedSettingsFrom(final NodeSettingsRO settings)
+            throws InvalidSettingsException {
+        for (final SettingsModel m : settingsModels) {
+            m.loadSettingsFrom(settings);
+        }
+    }
+
+    @Override
+    protected void reset() {
+        // not needed
+    }
+
+    @Override
+    protected void loadInternals(final File nodeInternDir, final ExecutionMonitor exec)
+            throws IOException, CanceledExecutionException {
+        // not needed
+    }
+
+    @Override
+    protected void saveInternals(final File nodeInternDir, final ExecutionMonitor exec)
+            throws IOException, CanceledExecutionException {
+        // not needed
+    }
+}
@@ -0,0 +1,17 @@
+package org.knime.knip.newomero.nodes.delete;
+
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+
+/**
+ * The settings of the OMERO delete node.
+ */
+public class OmeroDeleteSettings {
+
+    private OmeroDeleteSettings() {
+        // Utility class
+    }
+
+    public static SettingsModelString createUriColumnModel() {
+        return new SettingsModelString("URI Column", "");
+    }
+}
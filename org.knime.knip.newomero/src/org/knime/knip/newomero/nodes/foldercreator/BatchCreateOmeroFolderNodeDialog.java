@@ -0,0 +1,56 @@
+package org.knime.knip.newomero.nodes.foldercreator;
+
+import org.knime.core.data.StringValue;
+import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
+import org.knime.core.node.defaultnodesettings.DialogComponentBoolean;
+import org.knime.core.node.defaultnodesettings.DialogComponentColumnNameSelection;
+import org.knime.core.node.defaultnodesettings.DialogComponentStringSelection;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.knime.knip.core.util.EnumUtils;
+import org.knime.knip.newomero.nodes.foldercreator.CreateOmeroFolderSettings.TargetType;
+
+public class BatchCreateOmeroFolderNodeDialog extends DefaultNodeSettingsPane {
+
+    private final SettingsModelString targetTypeModel =
+            CreateOmeroFolderSettings.createTargetTypeModel();
+    private final SettingsModelString projectColumnModel =
+            CreateOmeroFolderSettings.createProjectColumnModel();
+
+    @SuppressWarnings("unchecked")
+    public BatchCreateOmeroFolderNodeDialog() {
+
+        createNewGroup("Folder Properties");
+        addDialogComponent(new DialogComponentStringSelection(targetTypeModel, "Folder Type",
+                EnumUtils.getStringCollectionFromToString(TargetType.values())));
+        targetTypeModel.addChangeListener(e -> refreshModelState());
+
+        addDialogComponent(new DialogComponentColumnNameSelection(
+                CreateOmeroFolderSettings.createNameColumnModel(), "Name Column", 1,
+                StringValue.class));
+        addDialogComponent(new DialogComponentColumnNameSelection(
+                CreateOmeroFolderSettings.createDescriptionColumnModel(), "Description Column",
+                1, false, true, StringValue.class));
+        closeCurrentGroup();
+
+        createNewGroup("Dataset options");
+        addDialogComponent(new DialogComponentColumnNameSelection(projectColumnModel,
+                "Project Column", 1, false, true, StringValue.class));
+        closeCurrentGroup();
+
+        createNewGroup("Existing folders");
+        addDialogComponent(new DialogComponentBoolean(
+                CreateOmeroFolderSettings.createGetOrCreateModel(),
+                "Reuse folders with the same name"));
+        closeCurrentGroup();
+    }
+
+    private void refreshModelState() {
+        projectColumnModel.setEnabled(
+                TargetType.DATASET.toString().equals(targetTypeModel.getStringValue()));
+    }
+
+    @Override
+    public void onOpen() {
+        refreshModelState();
+    }
+}
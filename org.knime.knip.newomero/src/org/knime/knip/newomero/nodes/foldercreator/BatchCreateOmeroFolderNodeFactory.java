@@ -0,0 +1,35 @@
+package org.knime.knip.newomero.nodes.foldercreator;
+
+import org.knime.core.node.NodeDialogPane;
+import org.knime.core.node.NodeFactory;
+import org.knime.core.node.NodeView;
+
+public class BatchCreateOmeroFolderNodeFactory extends NodeFactory<BatchCreateOmeroFolderNodeModel> {
+
+	@Override
+	public BatchCreateOmeroFolderNodeModel createNodeModel() {
+		return new BatchCreateOmeroFolderNodeModel();
+	}
+
+	@Override
+	protected int getNrNodeViews() {
+		return 0;
+	}
+
+	@Override
+	public NodeView<BatchCreateOmeroFolderNodeModel> createNodeView(int viewIndex,
+			BatchCreateOmeroFolderNodeModel nodeModel) {
+		return null;
+	}
+
+	@Override
+	protected boolean hasDialog() {
+		return true;
+	}
+
+	@Override
+	protected NodeDialogPane createNodeDialogPane() {
+		return new BatchCreateOmeroFolderNodeDialog();
+	}
+
+}
@@ -0,0 +1,400 @@
+package org.knime.knip.newomero.nodes.foldercreator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.DataType;
+import org.knime.core.data.StringValue;
+import org.knime.core.data.append.AppendedColumnRow;
+import org.knime.core.data.def.BooleanCell;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.node.BufferedDataContainer;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeModel;
+import org.knime.core.node.NodeSettingsRO;
+import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.defaultnodesettings.SettingsModel;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.knime.core.node.port.PortObject;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.port.PortType;
+import org.knime.knip.core.util.EnumUtils;
+import org.knime.knip.newomero.nodes.foldercreator.CreateOmeroFolderSettings.TargetType;
+import org.knime.knip.newomero.port.OmeroConnectionInformation;
+import org.knime.knip.newomero.port.OmeroConnectionInformationPortObject;
+import org.knime.knip.newomero.remote.OmeroConnection;
+import org.knime.knip.newomero.remote.OmeroHierarchyIndex;
+import org.knime.knip.newomero.util.OmeroUtils;
+
+import omero.RType;
+import omero.ServerError;
+import omero.rtypes;
+import omero.api.IQueryPrx;
+import omero.model.DatasetI;
+import omero.model.IObject;
+import omero.model.ProjectI;
+import omero.sys.ParametersI;
+
+/**
+ * Creates a project or dataset for every row of the input table. All folders
+ * are created with a single save on the server. Optionally folders that
+ * already exist with the same name, and for datasets in the same project, are
+ * reused instead of created again.
+ */
+public class BatchCreateOmeroFolderNodeModel extends NodeModel {
+
+    /** number of names looked up by a single query. */
+    private static final int QUERY_SIZE = 1000;
+
+    private final List<SettingsModel> settingsModels = new ArrayList<>();
+
+    private final SettingsModelString targetTypeModel =
+            CreateOmeroFolderSettings.createTargetTypeModel();
+    private final SettingsModelString nameColumnModel =
+            CreateOmeroFolderSettings.createNameColumnModel();
+    private final SettingsModelString descriptionColumnModel =
+            CreateOmeroFolderSettings.createDescriptionColumnModel();
+    private final SettingsModelString projectColumnModel =
+            CreateOmeroFolderSettings.createProjectColumnModel();
+    private final SettingsModelBoolean getOrCreateModel =
+            CreateOmeroFolderSettings.createGetOrCreateModel();
+
+    protected BatchCreateOmeroFolderNodeModel() {
+        super(new PortType[] { OmeroConnectionInformationPortObject.TYPE, BufferedDataTable.TYPE },
+                new PortType[] { BufferedDataTable.TYPE });
+
+        // store settings models
+        settingsModels.add(targetTypeModel);
+        settingsModels.add(nameColumnModel);
+        settingsModels.add(descriptionColumnModel);
+        settingsModels.add(projectColumnModel);
+        settingsModels.add(getOrCreateModel);
+    }
+
+    @Override
+    protected PortObject[] execute(final PortObject[] inObjects, final ExecutionContext exec)
+            throws Exception {
+
+        final OmeroConnectionInformation info =
+                ((OmeroConnectionInformationPortObject) inObjects[0])
+                        .getOmeroConnectionInformation();
+        final BufferedDataTable table = (BufferedDataTable) inObjects[1];
+        final DataTableSpec inSpec = table.getDataTableSpec();
+
+        final TargetType type =
+                EnumUtils.valueForName(targetTypeModel.getStringValue(), TargetType.values());
+        final String typeURIfragement = type == TargetType.PROJECT ? "project" : "dataset";
+        final int nameIdx = columnIndex(inSpec, nameColumnModel);
+        final int descriptionIdx = columnIndex(inSpec, descriptionColumnModel);
+        final int projectIdx =
+                type == TargetType.DATASET ? columnIndex(inSpec, projectColumnModel) : -1;
+        final boolean getOrCreate = getOrCreateModel.getBooleanValue();
+
+        final List<Folder> folders = new ArrayList<>();
+        final List<IObject> toCreate = new ArrayList<>();
+        final OmeroConnection connection = new OmeroConnection(info);
+        connection.open();
+        try {
+            final IQueryPrx query =
+                    connection.getGateway().getQueryService(connection.getSecurtiyContext());
+            exec.setMessage("Looking up existing folders");
+
+            // only the names used by the table are looked up
+            final Set<String> names = new HashSet<>();
+            final Set<String> projectNames = new HashSet<>();
+            for (final DataRow row : table) {
+                exec.checkCanceled();
+                final String name = stringValue(row, nameIdx);
+                if (name != null && !name.isEmpty()) {
+                    names.add(name);
+                }
+                final String projectRef = stringValue(row, projectIdx);
+                if (projectRef != null && !projectRef.isEmpty() && !projectRef.contains("/")) {
+                    projectNames.add(projectRef);
+                }
+            }
+            final long owner = connection.getGateway().getLoggedInUser().getId();
+
+            // project IDs by name, the oldest project wins
+            final Map<String, Long> projects = new HashMap<>();
+            final Set<String> lookupProjects = type == TargetType.PROJECT
+                    ? (getOrCreate ? names : Collections.<String> emptySet()) : projectNames;
+            for (final List<RType> row : projection(query,
+                    "select p.id, p.name from Project p where p.name in (:names) "
+                            + "and p.details.owner.id = :owner order by p.id",
+                    lookupProjects, owner)) {
+                projects.putIfAbsent(stringValue(row.get(1)), longValue(row.get(0)));
+            }
+            final Map<String, Long> existing = new HashMap<>();
+            if (getOrCreate) {
+                if (type == TargetType.PROJECT) {
+                    projects.forEach((name, id) ->
+                            existing.put(key(CreateOmeroFolderSettings.ROOT_ID, name), id));
+                } else {
+                    for (final List<RType> row : projection(query,
+                            "select d.id, d.name, l.parent.id from Dataset d "
+                                    + "left outer join d.projectLinks l where d.name in (:names) "
+                                    + "and d.details.owner.id = :owner order by d.id",
+                            names, owner)) {
+                        final long parent = row.get(2) == null ? CreateOmeroFolderSettings.ROOT_ID
+                                : longValue(row.get(2));
+                        existing.putIfAbsent(key(parent, stringValue(row.get(1))),
+                                longValue(row.get(0)));
+                    }
+                }
+            }
+
+            // index into toCreate by key of the folders created in this run
+            final Map<String, Integer> created = new HashMap<>();
+            for (final DataRow row : table) {
+                exec.checkCanceled();
+                final Folder folder = new Folder(row);
+                folders.add(folder);
+
+                final String name = stringValue(row, nameIdx);
+                if (name == null || name.isEmpty()) {
+                    folder.error = "No name";
+                    continue;
+                }
+                long parent = CreateOmeroFolderSettings.ROOT_ID;
+                final String projectRef = stringValue(row, projectIdx);
+                if (projectRef != null && !projectRef.isEmpty()) {
+                    final Long projectId;
+                    try {
+                        projectId = resolveProject(projectRef, projects);
+                    } catch (final IllegalArgumentException e) {
+                        folder.error = e.getMessage();
+                        continue;
+                    }
+                    if (projectId == null) {
+                        folder.error = "Unknown project " + projectRef;
+                        continue;
+                    }
+                    parent = projectId;
+                }
+
+                final String key = key(parent, name);
+                final Long existingId = getOrCreate ? existing.get(key) : null;
+                final Integer index = getOrCreate ? created.get(key) : null;
+                if (existingId != null) {
+                    folder.id = existingId;
+                } else if (index != null) {
+                    folder.index = index;
+                } else {
+                    folder.index = toCreate.size();
+                    created.put(key, folder.index);
+                    toCreate.add(createFolder(type, name, stringValue(row, descriptionIdx),
+                            parent));
+                }
+            }
+
+            if (!toCreate.isEmpty()) {
+                exec.setMessage("Creating " + toCreate.size() + " folders");
+                final List<IObject> saved = connection.getGateway()
+                        .getUpdateService(connection.getSecurtiyContext())
+                        .saveAndReturnArray(toCreate);
+                // browsing shows the new folders
+                OmeroHierarchyIndex.invalidate(info);
+                for (final Folder folder : folders) {
+                    if (folder.index >= 0) {
+                        folder.id = saved.get(folder.index).getId().getValue();
+                    }
+                }
+            }
+        } finally {
+            // return the session to the pool
+            connection.close();
+        }
+
+        final BufferedDataContainer container = exec.createDataContainer(createOutSpec(inSpec));
+        final String formatString = info.toString() + "/" + typeURIfragement + "/";
+        final DataCell missing = DataType.getMissingCell();
+        for (final Folder folder : folders) {
+            if (folder.error != null) {
+                setWarningMessage("Some folders could not be created: " + folder.error);
+                container.addRowToTable(new AppendedColumnRow(folder.row, missing, missing));
+            } else {
+                container.addRowToTable(new AppendedColumnRow(folder.row,
+                        new StringCell(formatString + folder.id),
+                        folder.index >= 0 ? BooleanCell.TRUE : BooleanCell.FALSE));
+            }
+        }
+        container.close();
+        return new PortObject[] { container.getTable() };
+    }
+
+    private static IObject createFolder(final TargetType type, final String name,
+            final String description, final long parent) {
+        if (type == TargetType.PROJECT) {
+            final ProjectI project = new ProjectI();
+            project.setName(rtypes.rstring(name));
+            if (description != null) {
+                project.setDescription(rtypes.rstring(description));
+            }
+            return project;
+        }
+        final DatasetI dataset = new DatasetI();
+        dataset.setName(rtypes.rstring(name));
+        if (description != null) {
+            dataset.setDescription(rtypes.rstring(description));
+        }
+        if (parent != CreateOmeroFolderSettings.ROOT_ID) {
+            dataset.linkProject(new ProjectI(parent, false));
+        }
+        return dataset;
+    }
+
+    /**
+     * @param projectRef the path of a project, ex: ome://host/project/3, or
+     *            the name of an existing project
+     * @return the ID of the project or null if there is none with the name
+     */
+    private static Long resolveProject(final String projectRef, final Map<String, Long> projects) {
+        if (projectRef.contains("/")) {
+            return OmeroUtils.parseId(projectRef, "project");
+        }
+        return projects.get(projectRef);
+    }
+
+    /**
+     * Runs the query for the names owned by the user, at most
+     * {@link #QUERY_SIZE} names at once.
+     *
+     * @return the rows of all queries, in order per query
+     */
+    private static List<List<RType>> projection(final IQueryPrx query, final String hql,
+            final Collection<String> names, final long owner) throws ServerError {
+        final List<List<RType>> rows = new ArrayList<>();
+        final List<String> all = new ArrayList<>(names);
+        for (int i = 0; i < all.size(); i += QUERY_SIZE) {
+            final List<RType> chunk = new ArrayList<>();
+            all.subList(i, Math.min(all.size(), i + QUERY_SIZE))
+                    .forEach(n -> chunk.add(rtypes.rstring(n)));
+            final ParametersI params = new ParametersI();
+            params.add("names", rtypes.rlist(chunk));
+            params.addLong("owner", owner);
+            rows.addAll(query.projection(hql, params));
+        }
+        return rows;
+    }
+
+    private static String key(final long parent, final String name) {
+        return parent + "/" + name;
+    }
+
+    private static int columnIndex(final DataTableSpec spec, final SettingsModelString model) {
+        final String column = model.getStringValue();
+        return column == null ? -1 : spec.findColumnIndex(column);
+    }
+
+    private static String stringValue(final DataRow row, final int idx) {
+        if (idx < 0 || row.getCell(idx).isMissing()) {
+            return null;
+        }
+        return ((StringValue) row.getCell(idx)).getStringValue().trim();
+    }
+
+    private static long longValue(final RType value) {
+        return ((Number) rtypes.unwrap(value)).longValue();
+    }
+
+    private static String stringValue(final RType value) {
+        final Object unwrapped = rtypes.unwrap(value);
+        return unwrapped == null ? "" : unwrapped.toString();
+    }
+
+    private DataTableSpec createOutSpec(final DataTableSpec inSpec) {
+        final DataColumnSpec[] specs = {
+                new DataColumnSpecCreator("OMERO URI", StringCell.TYPE).createSpec(),
+                new DataColumnSpecCreator("Created", BooleanCell.TYPE).createSpec() };
+        return new DataTableSpec(inSpec, new DataTableSpec(specs));
+    }
+
+    @Override
+    protected PortObjectSpec[] configure(final PortObjectSpec[] inSpecs)
+            throws InvalidSettingsException {
+        if (inSpecs[0] == null) {
+            throw new InvalidSettingsException("An Omero Connection is required!");
+        }
+        final DataTableSpec inSpec = (DataTableSpec) inSpecs[1];
+        if (columnIndex(inSpec, nameColumnModel) < 0) {
+            throw new InvalidSettingsException("Please select the column with the folder names");
+        }
+
+        return new PortObjectSpec[] { createOutSpec(inSpec) };
+    }
+
+    @Override
+    protected void saveSettingsTo(final NodeSettingsWO settings) {
+        settingsModels.forEach(m -> m.saveSettingsTo(settings));
+    }
+
+    @Override
+    protected void validateSettings(final NodeSettingsRO settings) throws InvalidSettingsException {
+        for (final SettingsModel m : settingsModels) {
+            m.validateSettings(settings);
+        }
+    }
+
+    @Override
+    protected void loadValidatedSettingsFrom(final NodeSettingsRO settings)
+            throws InvalidSettingsException {
+        for (final SettingsModel m : settingsModels) {
+            m.loadSettingsFrom(settings);
+        }
+    }
+
+    @Override
+    protected void reset() {
+        // not needed
+    }
+
+    @Override
+    protected void loadInternals(final File nodeInternDir, final ExecutionMonitor exec)
+            throws IOException, CanceledExecutionException {
+        // not needed
+    }
+
+    @Override
+    protected void saveInternals(final File nodeInternDir, final ExecutionMonitor exec)
+            throws IOException, CanceledExecutionException {
+        // not needed
+    }
+
+    /** The folder requested by a row. */
+    private static final class Folder {
+
+        private final DataRow row;
+
+        /** ID of the folder once it exists. */
+        private long id = -1;
+
+        /** index of the folder in the batch, -1 if it is not created. */
+        private int index = -1;
+
+        /** why the folder could not be created, null on success. */
+        private String error;
+
+        private Folder(final DataRow row) {
+            this.row = row;
+        }
+    }
+}
@@ -141,6 +141,13 @@ public class CreateOmeroFolderNodeDialog extends DefaultNodeSettingsPane {
             JOptionPane.showMessageDialog(new JFrame(), e.getMessage(), "Invalid settings",
                     JOptionPane.ERROR_MESSAGE);
             return false;
+        } finally {
+            // return the session to the pool, a refresh leases it again
+            try {
+                connection.close();
+            } catch (final Exception e) {
+                // nothing to release
+            }
         }
         final List<String> keys = new ArrayList<>(idMap.keySet());
         Collections.sort(keys);
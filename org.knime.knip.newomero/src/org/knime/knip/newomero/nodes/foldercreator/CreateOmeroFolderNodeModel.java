@@ -26,6 +26,7 @@ import org.knime.knip.newomero.nodes.foldercreator.CreateOmeroFolderSettings.Tar
 import org.knime.knip.newomero.port.OmeroConnectionInformation;
 import org.knime.knip.newomero.port.OmeroConnectionInformationPortObject;
 import org.knime.knip.newomero.remote.OmeroConnection;
+import org.knime.knip.newomero.remote.OmeroHierarchyIndex;
 
 import omero.gateway.Gateway;
 import omero.gateway.SecurityContext;
@@ -70,28 +71,34 @@ public class CreateOmeroFolderNodeModel extends NodeModel {
                 ((OmeroConnectionInformationPortObject) inObjects[0])
                         .getOmeroConnectionInformation();
 
-        final OmeroConnection connection = new OmeroConnection(info);
-        connection.open();
-
-        final Gateway gw = connection.getGateway();
-        final SecurityContext ctx = connection.getSecurtiyContext();
-
         final TargetType type =
                 EnumUtils.valueForName(targetTypeModel.getStringValue(), TargetType.values());
 
         long createdID;
         String typeURIfragement;
-        switch (type) {
-        case DATASET:
-            createdID = createDataSet(gw, ctx);
-            typeURIfragement = "dataset";
-            break;
-        case PROJECT:
-            createdID = createProject(gw, ctx);
-            typeURIfragement = "project";
-            break;
-        default:
-            throw new IllegalStateException("Implementation Error!"); // FIXME
+        final OmeroConnection connection = new OmeroConnection(info);
+        connection.open();
+        try {
+            final Gateway gw = connection.getGateway();
+            final SecurityContext ctx = connection.getSecurtiyContext();
+
+            switch (type) {
+            case DATASET:
+                createdID = createDataSet(gw, ctx);
+                typeURIfragement = "dataset";
+                break;
+            case PROJECT:
+                createdID = createProject(gw, ctx);
+                typeURIfragement = "project";
+                break;
+            default:
+                throw new IllegalStateException("Implementation Error!"); // FIXME
+            }
+            // browsing shows the new folder
+            OmeroHierarchyIndex.invalidate(info);
+        } finally {
+            // return the session to the pool
+            connection.close();
         }
 
         final String formatString = info.toString() + "/{0}/{1}";
@@ -4,6 +4,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
 import org.knime.core.node.defaultnodesettings.SettingsModelLong;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
 
@@ -66,4 +67,20 @@ public class CreateOmeroFolderSettings {
     public static SettingsModelString createProjectSelectionModel() {
         return new SettingsModelString("(Internal, do not use!) Name of enclosing project", "");
     }
+
+    public static SettingsModelString createNameColumnModel() {
+        return new SettingsModelString("Name Column", "");
+    }
+
+    public static SettingsModelString createDescriptionColumnModel() {
+        return new SettingsModelString("Description Column", "");
+    }
+
+    public static SettingsModelString createProjectColumnModel() {
+        return new SettingsModelString("Project Column", "");
+    }
+
+    public static SettingsModelBoolean createGetOrCreateModel() {
+        return new SettingsModelBoolean("Reuse Existing Folders", true);
+    }
 }
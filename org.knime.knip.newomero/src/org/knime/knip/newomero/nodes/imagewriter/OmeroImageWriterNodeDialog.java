@@ -0,0 +1,33 @@
+package org.knime.knip.newomero.nodes.imagewriter;
+
+import org.knime.core.node.FlowVariableModel;
+import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
+import org.knime.core.node.defaultnodesettings.DialogComponentColumnNameSelection;
+import org.knime.core.node.defaultnodesettings.DialogComponentNumber;
+import org.knime.core.node.defaultnodesettings.DialogComponentString;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.knime.knip.base.data.img.ImgPlusValue;
+
+public class OmeroImageWriterNodeDialog extends DefaultNodeSettingsPane {
+
+    @SuppressWarnings("unchecked")
+    public OmeroImageWriterNodeDialog() {
+        createNewGroup("Images");
+        addDialogComponent(new DialogComponentColumnNameSelection(
+                OmeroImageWriterSettings.createImageColumnModel(), "Image Column", 1,
+                ImgPlusValue.class));
+        closeCurrentGroup();
+
+        createNewGroup("Target");
+        final SettingsModelString datasetModel = OmeroImageWriterSettings.createDatasetModel();
+        // the path is usually published by the Create Omero Folder node
+        final FlowVariableModel fvm = createFlowVariableModel(datasetModel);
+        addDialogComponent(new DialogComponentString(datasetModel, "Dataset", true, 30, fvm));
+        closeCurrentGroup();
+
+        createNewGroup("Upload");
+        addDialogComponent(new DialogComponentNumber(
+                OmeroImageWriterSettings.createConcurrentImagesModel(), "Concurrent images", 1));
+        closeCurrentGroup();
+    }
+}
@@ -0,0 +1,35 @@
+package org.knime.knip.newomero.nodes.imagewriter;
+
+import org.knime.core.node.NodeDialogPane;
+import org.knime.core.node.NodeFactory;
+import org.knime.core.node.NodeView;
+
+public class OmeroImageWriterNodeFactory extends NodeFactory<OmeroImageWriterNodeModel> {
+
+	@Override
+	public OmeroImageWriterNodeModel createNodeModel() {
+		return new OmeroImageWriterNodeModel();
+	}
+
+	@Override
+	protected int getNrNodeViews() {
+		return 0;
+	}
+
+	@Override
+	public NodeView<OmeroImageWriterNodeModel> createNodeView(int viewIndex,
+			OmeroImageWriterNodeModel nodeModel) {
+		return null;
+	}
+
+	@Override
+	protected boolean hasDialog() {
+		return true;
+	}
+
+	@Override
+	protected NodeDialogPane createNodeDialogPane() {
+		return new OmeroImageWriterNodeDialog();
+	}
+
+}
@@ -0,0 +1,491 @@
+package org.knime.knip.newomero.nodes.imagewriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.DataType;
+import org.knime.core.data.append.AppendedColumnRow;
+import org.knime.core.data.container.CloseableRowIterator;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.node.BufferedDataContainer;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeLogger;
+import org.knime.core.node.NodeModel;
+import org.knime.core.node.NodeSettingsRO;
+import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.defaultnodesettings.SettingsModel;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.knime.core.node.port.PortObject;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.port.PortType;
+import org.knime.core.util.UniqueNameGenerator;
+import org.knime.knip.base.data.img.ImgPlusValue;
+import org.knime.knip.newomero.port.OmeroConnectionInformation;
+import org.knime.knip.newomero.port.OmeroConnectionInformationPortObject;
+import org.knime.knip.newomero.remote.OmeroConnection;
+import org.knime.knip.newomero.remote.OmeroHierarchyIndex;
+import org.knime.knip.newomero.util.OmeroUtils;
+
+import net.imagej.ImgPlus;
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+import omero.api.IPixelsPrx;
+import omero.api.RawPixelsStorePrx;
+import omero.cmd.CmdCallbackI;
+import omero.cmd.Delete2Response;
+import omero.gateway.Gateway;
+import omero.gateway.SecurityContext;
+import omero.gateway.util.Requests;
+import omero.model.DatasetI;
+import omero.model.DatasetImageLink;
+import omero.model.DatasetImageLinkI;
+import omero.model.IObject;
+import omero.model.ImageI;
+import omero.model.PixelsType;
+import omero.sys.ParametersI;
+
+/**
+ * Creates an image in an OMERO dataset for every image of the input table and
+ * uploads the pixels through the raw pixels store. A whole Z stack is sent
+ * with a single call where it fits into {@link #MAX_BATCH_BYTES}, and several
+ * images are uploaded at once. An image whose upload fails is deleted again.
+ */
+public class OmeroImageWriterNodeModel extends NodeModel {
+
+    private static final NodeLogger LOGGER = NodeLogger.getLogger(OmeroImageWriterNodeModel.class);
+
+    /** largest single write, stays well below the Ice message size limit. */
+    private static final int MAX_BATCH_BYTES = 16 << 20;
+
+    /** polls and interval to wait for the delete of a failed upload. */
+    private static final int DELETE_POLLS = 60;
+
+    private static final long DELETE_POLL_INTERVAL_MS = 500;
+
+    /** axes in the order of the OMERO dimensions. */
+    private static final AxisType[] DIMENSIONS =
+            { Axes.X, Axes.Y, Axes.Z, Axes.CHANNEL, Axes.TIME };
+
+    private final List<SettingsModel> settingsModels = new ArrayList<>();
+
+    private final SettingsModelString imageColumnModel =
+            OmeroImageWriterSettings.createImageColumnModel();
+    private final SettingsModelString datasetModel = OmeroImageWriterSettings.createDatasetModel();
+    private final SettingsModelIntegerBounded concurrentImagesModel =
+            OmeroImageWriterSettings.createConcurrentImagesModel();
+
+    protected OmeroImageWriterNodeModel() {
+        super(new PortType[] { OmeroConnectionInformationPortObject.TYPE, BufferedDataTable.TYPE },
+                new PortType[] { BufferedDataTable.TYPE });
+
+        // store settings models
+        settingsModels.add(imageColumnModel);
+        settingsModels.add(datasetModel);
+        settingsModels.add(concurrentImagesModel);
+    }
+
+    @Override
+    protected PortObject[] execute(final PortObject[] inObjects, final ExecutionContext exec)
+            throws Exception {
+
+        final OmeroConnectionInformation info =
+                ((OmeroConnectionInformationPortObject) inObjects[0])
+                        .getOmeroConnectionInformation();
+        final BufferedDataTable table = (BufferedDataTable) inObjects[1];
+        final long datasetId = OmeroUtils.parseId(datasetModel.getStringValue(), "dataset");
+        final int imageIdx =
+                table.getDataTableSpec().findColumnIndex(imageColumnModel.getStringValue());
+
+        final BufferedDataContainer container =
+                exec.createDataContainer(createOutSpec(table.getDataTableSpec()));
+        final String uriFormat = info.toString() + "/image/";
+
+        final int concurrent = concurrentImagesModel.getIntValue();
+        final ExecutorService uploaders = Executors.newFixedThreadPool(concurrent);
+        final OmeroConnection connection = new OmeroConnection(info);
+        connection.open();
+        try {
+            final Gateway gw = connection.getGateway();
+            final SecurityContext ctx = connection.getSecurtiyContext();
+
+            // uploads in flight, the rows are written in input order
+            final Deque<Upload> pending = new ArrayDeque<>();
+            final long rowCount = table.size();
+            long done = 0;
+            try (CloseableRowIterator it = table.iterator()) {
+                while (it.hasNext() || !pending.isEmpty()) {
+                    exec.checkCanceled();
+                    if (it.hasNext() && pending.size() < concurrent) {
+                        final DataRow row = it.next();
+                        final DataCell cell = row.getCell(imageIdx);
+                        pending.add(new Upload(row, cell.isMissing() ? null
+                                : uploaders.submit(() -> upload(gw, ctx, datasetId,
+                                        ((ImgPlusValue<?>) cell).getImgPlus(),
+                                        row.getKey().getString()))));
+                        continue;
+                    }
+                    final Upload upload = pending.poll();
+                    container.addRowToTable(new AppendedColumnRow(upload.row,
+                            toCell(upload, uriFormat)));
+                    exec.setProgress(++done / (double) rowCount,
+                            "Uploaded image " + done + " of " + rowCount);
+                }
+            } finally {
+                pending.forEach(u -> {
+                    if (u.result != null) {
+                        u.result.cancel(true);
+                    }
+                });
+            }
+        } finally {
+            uploaders.shutdownNow();
+            // browsing shows the new images
+            OmeroHierarchyIndex.invalidate(info);
+            // return the session to the pool
+            connection.close();
+        }
+
+        container.close();
+        return new PortObject[] { container.getTable() };
+    }
+
+    private DataCell toCell(final Upload upload, final String uriFormat)
+            throws InterruptedException {
+        if (upload.result == null) {
+            return DataType.getMissingCell();
+        }
+        try {
+            return new StringCell(uriFormat + upload.result.get());
+        } catch (final ExecutionException e) {
+            final String msg = "Could not upload image of row " + upload.row.getKey() + ": "
+                    + e.getCause().getMessage();
+            LOGGER.debug(msg, e.getCause());
+            setWarningMessage(msg);
+            return DataType.getMissingCell();
+        }
+    }
+
+    /**
+     * Creates the image in the dataset and uploads its pixels.
+     *
+     * @return the ID of the created image
+     */
+    private static <T extends RealType<T>> long upload(final Gateway gw,
+            final SecurityContext ctx, final long datasetId, final ImgPlus<T> img,
+            final String name) throws Exception {
+        // X, Y, Z, C, T, -1 for a missing axis
+        final int[] dimIdx = new int[DIMENSIONS.length];
+        final int[] size = new int[DIMENSIONS.length];
+        int mapped = 0;
+        for (int i = 0; i < DIMENSIONS.length; i++) {
+            dimIdx[i] = img.dimensionIndex(DIMENSIONS[i]);
+            size[i] = dimIdx[i] < 0 ? 1 : (int) img.dimension(dimIdx[i]);
+            if (dimIdx[i] >= 0) {
+                mapped++;
+            }
+        }
+        if (dimIdx[0] < 0 || dimIdx[1] < 0) {
+            throw new IllegalArgumentException("The image has no X or Y axis");
+        }
+        if (mapped != img.numDimensions()) {
+            throw new IllegalArgumentException(
+                    "Only the axes X, Y, Z, Channel and Time can be stored in OMERO");
+        }
+
+        final PixelType type = PixelType.of(img.firstElement());
+        final IPixelsPrx pixelsService = gw.getPixelsService(ctx);
+        final PixelsType pixelsType = (PixelsType) pixelsService
+                .getEnumeration(PixelsType.class.getName(), type.omeroName);
+        final List<Integer> channels = new ArrayList<>();
+        for (int c = 0; c < size[3]; c++) {
+            channels.add(c);
+        }
+        final long imageId = pixelsService.createImage(size[0], size[1], size[2], size[4],
+                channels, pixelsType, name, "").getValue();
+        try {
+            writePixels(gw, ctx, imageId, img, dimIdx, size, type);
+
+            final DatasetImageLink link = new DatasetImageLinkI();
+            link.setParent(new DatasetI(datasetId, false));
+            link.setChild(new ImageI(imageId, false));
+            gw.getUpdateService(ctx).saveObject(link);
+        } catch (final Exception e) {
+            // do not leave a half written image outside of any dataset
+            deleteImage(gw, ctx, imageId, e);
+            throw e;
+        }
+        return imageId;
+    }
+
+    /**
+     * Uploads the pixels of the image. A whole Z stack is sent at once if it
+     * fits into {@link #MAX_BATCH_BYTES}, otherwise single planes, and planes
+     * larger than that in bands of rows.
+     */
+    private static <T extends RealType<T>> void writePixels(final Gateway gw,
+            final SecurityContext ctx, final long imageId, final ImgPlus<T> img,
+            final int[] dimIdx, final int[] size, final PixelType type) throws Exception {
+        final ParametersI params = new ParametersI();
+        params.addId(imageId);
+        final IObject pixels = gw.getQueryService(ctx)
+                .findByQuery("select p from Pixels p where p.image.id = :id", params);
+
+        final RawPixelsStorePrx store = gw.createPixelsStore(ctx);
+        try {
+            store.setPixelsId(pixels.getId().getValue(), true);
+            final long rowBytes = (long) size[0] * type.bytes;
+            final long planeBytes = rowBytes * size[1];
+            final boolean stackWise = planeBytes * size[2] <= MAX_BATCH_BYTES;
+            final int bandRows = (int) Math.min(size[1], Math.max(1, MAX_BATCH_BYTES / rowBytes));
+            final ByteBuffer buffer = ByteBuffer.allocate(
+                    (int) (stackWise ? planeBytes * size[2] : rowBytes * bandRows));
+            for (int t = 0; t < size[4]; t++) {
+                for (int c = 0; c < size[3]; c++) {
+                    buffer.clear();
+                    for (int z = 0; z < size[2]; z++) {
+                        if (stackWise) {
+                            writeRows(img, dimIdx, z, c, t, 0, size[1], type, buffer);
+                        } else if (bandRows == size[1]) {
+                            writeRows(img, dimIdx, z, c, t, 0, size[1], type, buffer);
+                            store.setPlane(buffer.array(), z, c, t);
+                            buffer.clear();
+                        } else {
+                            for (int y = 0; y < size[1]; y += bandRows) {
+                                final int rows = Math.min(bandRows, size[1] - y);
+                                writeRows(img, dimIdx, z, c, t, y, rows, type, buffer);
+                                store.setTile(buffer.position() == buffer.capacity()
+                                        ? buffer.array()
+                                        : Arrays.copyOf(buffer.array(), buffer.position()),
+                                        z, c, t, 0, y, size[0], rows);
+                                buffer.clear();
+                            }
+                        }
+                    }
+                    if (stackWise) {
+                        store.setStack(buffer.array(), 0, c, t);
+                    }
+                }
+            }
+            store.save();
+        } finally {
+            store.close();
+        }
+    }
+
+    /**
+     * Deletes an image whose upload failed, a failure is added to the cause.
+     */
+    private static void deleteImage(final Gateway gw, final SecurityContext ctx,
+            final long imageId, final Exception cause) {
+        try {
+            final CmdCallbackI cb = gw.submit(ctx,
+                    Requests.delete().target("Image").id(imageId).build());
+            try {
+                if (!(cb.loop(DELETE_POLLS, DELETE_POLL_INTERVAL_MS) instanceof Delete2Response)) {
+                    LOGGER.warn("Could not delete the partially uploaded image " + imageId);
+                }
+            } finally {
+                cb.close(true);
+            }
+        } catch (final Exception e) {
+            cause.addSuppressed(e);
+            LOGGER.warn("Could not delete the partially uploaded image " + imageId, e);
+        }
+    }
+
+    /**
+     * Appends rows of a plane to the buffer in the byte order of OMERO, X
+     * varies fastest.
+     */
+    private static <T extends RealType<T>> void writeRows(final ImgPlus<T> img,
+            final int[] dimIdx, final int z, final int c, final int t, final int y,
+            final int rows, final PixelType type, final ByteBuffer buffer) {
+        final long[] pos = { 0, 0, z, c, t };
+        RandomAccessibleInterval<T> plane = img;
+        // fix the other axes, highest index first so the indices stay valid
+        final int[] xy = { dimIdx[0], dimIdx[1] };
+        for (int d = img.numDimensions() - 1; d >= 0; d--) {
+            for (int i = 2; i < dimIdx.length; i++) {
+                if (dimIdx[i] == d) {
+                    plane = Views.hyperSlice(plane, d, plane.min(d) + pos[i]);
+                    if (xy[0] > d) {
+                        xy[0]--;
+                    }
+                    if (xy[1] > d) {
+                        xy[1]--;
+                    }
+                }
+            }
+        }
+        if (xy[0] > xy[1]) {
+            plane = Views.permute(plane, 0, 1);
+        }
+        plane = Views.interval(plane, new long[] { plane.min(0), plane.min(1) + y },
+                new long[] { plane.max(0), plane.min(1) + y + rows - 1 });
+        for (final T value : Views.flatIterable(plane)) {
+            type.put(value, buffer);
+        }
+    }
+
+    private DataTableSpec createOutSpec(final DataTableSpec inSpec) {
+        final String name = new UniqueNameGenerator(inSpec).newName("OMERO URI");
+        final DataColumnSpec uriSpec = new DataColumnSpecCreator(name, StringCell.TYPE).createSpec();
+        return new DataTableSpec(inSpec, new DataTableSpec(uriSpec));
+    }
+
+    @Override
+    protected PortObjectSpec[] configure(final PortObjectSpec[] inSpecs)
+            throws InvalidSettingsException {
+        if (inSpecs[0] == null) {
+            throw new InvalidSettingsException("An Omero Connection is required!");
+        }
+        final DataTableSpec inSpec = (DataTableSpec) inSpecs[1];
+        final int idx = inSpec.findColumnIndex(imageColumnModel.getStringValue());
+        if (idx < 0 || !inSpec.getColumnSpec(idx).getType().isCompatible(ImgPlusValue.class)) {
+            throw new InvalidSettingsException("Please select an image column");
+        }
+        try {
+            OmeroUtils.parseId(datasetModel.getStringValue(), "dataset");
+        } catch (final IllegalArgumentException e) {
+            throw new InvalidSettingsException(e.getMessage(), e);
+        }
+
+        return new PortObjectSpec[] { createOutSpec(inSpec) };
+    }
+
+    @Override
+    protected void saveSettingsTo(final NodeSettingsWO settings) {
+        settingsModels.forEach(m -> m.saveSettingsTo(settings));
+    }
+
+    @Override
+    protected void validateSettings(final NodeSettingsRO settings) throws InvalidSettingsException {
+        for (final SettingsModel m : settingsModels) {
+            m.validateSettings(settings);
+        }
+    }
+
+    @Override
+    protected void loadValidatedSettingsFrom(final NodeSettingsRO settings)
+            throws InvalidSettingsException {
+        for (final SettingsModel m : settingsModels) {
+            m.loadSettingsFrom(settings);
+        }
+    }
+
+    @Override
+    protected void reset() {
+        // not needed
+    }
+
+    @Override
+    protected void loadInternals(final File nodeInternDir, final ExecutionMonitor exec)
+            throws IOException, CanceledExecutionException {
+        // not needed
+    }
+
+    @Override
+    protected void saveInternals(final File nodeInternDir, final ExecutionMonitor exec)
+            throws IOException, CanceledExecutionException {
+        // not needed
+    }
+
+    /** A row and the ID of its uploaded image, null for a missing image. */
+    private static final class Upload {
+
+        private final DataRow row;
+        private final Future<Long> result;
+
+        private Upload(final DataRow row, final Future<Long> result) {
+            this.row = row;
+            this.result = result;
+        }
+    }
+
+    /** OMERO pixel types, other types are stored as double. */
+    private enum PixelType {
+        UINT8("uint8", 1), INT8("int8", 1), UINT16("uint16", 2), INT16("int16", 2),
+        UINT32("uint32", 4), INT32("int32", 4), FLOAT("float", 4), DOUBLE("double", 8);
+
+        private final String omeroName;
+        private final int bytes;
+
+        PixelType(final String omeroName, final int bytes) {
+            this.omeroName = omeroName;
+            this.bytes = bytes;
+        }
+
+        private static PixelType of(final RealType<?> type) {
+            if (type instanceof UnsignedByteType) {
+                return UINT8;
+            } else if (type instanceof ByteType) {
+                return INT8;
+            } else if (type instanceof UnsignedShortType) {
+                return UINT16;
+            } else if (type instanceof ShortType) {
+                return INT16;
+            } else if (type instanceof UnsignedIntType) {
+                return UINT32;
+            } else if (type instanceof IntType) {
+                return INT32;
+            } else if (type instanceof FloatType) {
+                return FLOAT;
+            }
+            return DOUBLE;
+        }
+
+        /** writes the value big endian, the byte order of the pixels store. */
+        private void put(final RealType<?> value, final ByteBuffer buffer) {
+            final double v = value.getRealDouble();
+            switch (this) {
+            case UINT8:
+            case INT8:
+                buffer.put((byte) (long) v);
+                break;
+            case UINT16:
+            case INT16:
+                buffer.putShort((short) (long) v);
+                break;
+            case UINT32:
+            case INT32:
+                buffer.putInt((int) (long) v);
+                break;
+            case FLOAT:
+                buffer.putFloat((float) v);
+                break;
+            default:
+                buffer.putDouble(v);
+            }
+        }
+    }
+}
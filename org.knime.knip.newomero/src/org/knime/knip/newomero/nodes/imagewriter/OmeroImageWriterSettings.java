@@ -0,0 +1,26 @@
+package org.knime.knip.newomero.nodes.imagewriter;
+
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+
+/**
+ * The settings of the OMERO image writer node.
+ */
+public class OmeroImageWriterSettings {
+
+    private OmeroImageWriterSettings() {
+        // Utility class
+    }
+
+    public static SettingsModelString createImageColumnModel() {
+        return new SettingsModelString("Image Column", "");
+    }
+
+    public static SettingsModelString createDatasetModel() {
+        return new SettingsModelString("Target Dataset", "");
+    }
+
+    public static SettingsModelIntegerBounded createConcurrentImagesModel() {
+        return new SettingsModelIntegerBounded("Concurrent Images", 4, 1, 64);
+    }
+}
@@ -0,0 +1,37 @@
+package org.knime.knip.newomero.nodes.importer;
+
+import org.knime.core.data.StringValue;
+import org.knime.core.node.FlowVariableModel;
+import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
+import org.knime.core.node.defaultnodesettings.DialogComponentBoolean;
+import org.knime.core.node.defaultnodesettings.DialogComponentColumnNameSelection;
+import org.knime.core.node.defaultnodesettings.DialogComponentNumber;
+import org.knime.core.node.defaultnodesettings.DialogComponentString;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+
+public class OmeroImportNodeDialog extends DefaultNodeSettingsPane {
+
+    @SuppressWarnings("unchecked")
+    public OmeroImportNodeDialog() {
+        createNewGroup("Files");
+        addDialogComponent(new DialogComponentColumnNameSelection(
+                OmeroImportSettings.createPathColumnModel(), "Path Column", 1,
+                StringValue.class));
+        closeCurrentGroup();
+
+        createNewGroup("Target");
+        final SettingsModelString datasetModel = OmeroImportSettings.createDatasetModel();
+        // the path is usually published by the Create Omero Folder node
+        final FlowVariableModel fvm = createFlowVariableModel(datasetModel);
+        addDialogComponent(new DialogComponentString(datasetModel, "Dataset", true, 30, fvm));
+        closeCurrentGroup();
+
+        createNewGroup("Import");
+        addDialogComponent(new DialogComponentNumber(
+                OmeroImportSettings.createConcurrentFilesModel(), "Concurrent files", 1));
+        addDialogComponent(new DialogComponentBoolean(
+                OmeroImportSettings.createSkipImportedModel(),
+                "Skip files already imported into the dataset"));
+        closeCurrentGroup();
+    }
+}
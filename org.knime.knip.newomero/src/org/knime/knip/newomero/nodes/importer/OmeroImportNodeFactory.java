@@ -0,0 +1,35 @@
+package org.knime.knip.newomero.nodes.importer;
+
+import org.knime.core.node.NodeDialogPane;
+import org.knime.core.node.NodeFactory;
+import org.knime.core.node.NodeView;
+
+public class OmeroImportNodeFactory extends NodeFactory<OmeroImportNodeModel> {
+
+	@Override
+	public OmeroImportNodeModel createNodeModel() {
+		return new OmeroImportNodeModel();
+	}
+
+	@Override
+	protected int getNrNodeViews() {
+		return 0;
+	}
+
+	@Override
+	public NodeView<OmeroImportNodeModel> createNodeView(int viewIndex,
+			OmeroImportNodeModel nodeModel) {
+		return null;
+	}
+
+	@Override
+	protected boolean hasDialog() {
+		return true;
+	}
+
+	@Override
+	protected NodeDialogPane createNodeDialogPane() {
+		return new OmeroImportNodeDialog();
+	}
+
+}
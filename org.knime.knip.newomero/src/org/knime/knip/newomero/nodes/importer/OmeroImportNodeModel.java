@@ -0,0 +1,423 @@
+package org.knime.knip.newomero.nodes.importer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.DataType;
+import org.knime.core.data.StringValue;
+import org.knime.core.data.append.AppendedColumnRow;
+import org.knime.core.data.collection.CollectionCellFactory;
+import org.knime.core.data.collection.ListCell;
+import org.knime.core.data.container.CloseableRowIterator;
+import org.knime.core.data.def.DoubleCell;
+import org.knime.core.data.def.LongCell;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.node.BufferedDataContainer;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeLogger;
+import org.knime.core.node.NodeModel;
+import org.knime.core.node.NodeSettingsRO;
+import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.defaultnodesettings.SettingsModel;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.knime.core.node.port.PortObject;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.port.PortType;
+import org.knime.knip.newomero.port.OmeroConnectionInformation;
+import org.knime.knip.newomero.port.OmeroConnectionInformationPortObject;
+import org.knime.knip.newomero.remote.OmeroConnection;
+import org.knime.knip.newomero.remote.OmeroHierarchyIndex;
+import org.knime.knip.newomero.util.OmeroUtils;
+
+import ome.formats.importer.IObservable;
+import ome.formats.importer.IObserver;
+import ome.formats.importer.ImportCandidates;
+import ome.formats.importer.ImportConfig;
+import ome.formats.importer.ImportContainer;
+import ome.formats.importer.ImportEvent;
+import ome.formats.importer.ImportLibrary;
+import ome.formats.importer.OMEROWrapper;
+import omero.RType;
+import omero.rtypes;
+import omero.gateway.Gateway;
+import omero.gateway.SecurityContext;
+import omero.model.DatasetI;
+import omero.model.Pixels;
+import omero.sys.ParametersI;
+
+/**
+ * Imports local files into an OMERO dataset. Every worker leases its own
+ * session and keeps its import library, so several files are uploaded and
+ * imported at once. The files are transferred in blocks of the default block
+ * size of the import store. Files whose path is already recorded in a fileset
+ * of the dataset can be skipped, so a failed run can be resumed by executing
+ * the node again.
+ */
+public class OmeroImportNodeModel extends NodeModel {
+
+    private static final NodeLogger LOGGER = NodeLogger.getLogger(OmeroImportNodeModel.class);
+
+    private static final String IMPORTED = "IMPORTED";
+    private static final String SKIPPED = "SKIPPED";
+    private static final String FAILED = "FAILED";
+
+    private final List<SettingsModel> settingsModels = new ArrayList<>();
+
+    private final SettingsModelString pathColumnModel = OmeroImportSettings.createPathColumnModel();
+    private final SettingsModelString datasetModel = OmeroImportSettings.createDatasetModel();
+    private final SettingsModelIntegerBounded concurrentFilesModel =
+            OmeroImportSettings.createConcurrentFilesModel();
+    private final SettingsModelBoolean skipImportedModel =
+            OmeroImportSettings.createSkipImportedModel();
+
+    protected OmeroImportNodeModel() {
+        super(new PortType[] { OmeroConnectionInformationPortObject.TYPE, BufferedDataTable.TYPE },
+                new PortType[] { BufferedDataTable.TYPE });
+
+        // store settings models
+        settingsModels.add(pathColumnModel);
+        settingsModels.add(datasetModel);
+        settingsModels.add(concurrentFilesModel);
+        settingsModels.add(skipImportedModel);
+    }
+
+    @Override
+    protected PortObject[] execute(final PortObject[] inObjects, final ExecutionContext exec)
+            throws Exception {
+
+        final OmeroConnectionInformation info =
+                ((OmeroConnectionInformationPortObject) inObjects[0])
+                        .getOmeroConnectionInformation();
+        final BufferedDataTable table = (BufferedDataTable) inObjects[1];
+        final long datasetId = OmeroUtils.parseId(datasetModel.getStringValue(), "dataset");
+        final int pathIdx =
+                table.getDataTableSpec().findColumnIndex(pathColumnModel.getStringValue());
+
+        final BufferedDataContainer container =
+                exec.createDataContainer(createOutSpec(table.getDataTableSpec()));
+        final String uriFormat = info.toString() + "/image/";
+
+        final int concurrent = concurrentFilesModel.getIntValue();
+        final ExecutorService workers = Executors.newFixedThreadPool(concurrent);
+        final BlockingQueue<Importer> importers = new ArrayBlockingQueue<>(concurrent);
+        try {
+            exec.setMessage("Connecting");
+            for (int i = 0; i < concurrent; i++) {
+                importers.add(new Importer(info));
+            }
+            final Map<String, List<Long>> imported = skipImportedModel.getBooleanValue()
+                    ? listImported(importers.peek(), datasetId) : Collections.emptyMap();
+
+            // imports in flight, the rows are written in input order
+            final Deque<Import> pending = new ArrayDeque<>();
+            final long rowCount = table.size();
+            long done = 0;
+            try (CloseableRowIterator it = table.iterator()) {
+                while (it.hasNext() || !pending.isEmpty()) {
+                    exec.checkCanceled();
+                    if (it.hasNext() && pending.size() < concurrent) {
+                        final DataRow row = it.next();
+                        final DataCell cell = row.getCell(pathIdx);
+                        final String path =
+                                cell.isMissing() ? null : ((StringValue) cell).getStringValue();
+                        final List<Long> existing =
+                                path == null ? null : imported.get(toClientPath(path));
+                        if (path == null || existing != null) {
+                            pending.add(new Import(row, null, existing));
+                        } else {
+                            pending.add(new Import(row, workers.submit(() -> {
+                                final Importer importer = importers.take();
+                                try {
+                                    return importer.importFile(path, datasetId);
+                                } finally {
+                                    importers.add(importer);
+                                }
+                            }), null));
+                        }
+                        continue;
+                    }
+                    final Import next = pending.poll();
+                    container.addRowToTable(
+                            new AppendedColumnRow(next.row, toCells(next, uriFormat)));
+                    exec.setProgress(++done / (double) rowCount,
+                            "Processed file " + done + " of " + rowCount);
+                }
+            } finally {
+                pending.forEach(i -> {
+                    if (i.result != null) {
+                        i.result.cancel(true);
+                    }
+                });
+            }
+        } finally {
+            workers.shutdownNow();
+            // browsing shows the new images
+            OmeroHierarchyIndex.invalidate(info);
+            importers.forEach(Importer::close);
+        }
+
+        container.close();
+        return new PortObject[] { container.getTable() };
+    }
+
+    /**
+     * @return the IDs of the images in the dataset by the client path of
+     *         their files
+     */
+    private static Map<String, List<Long>> listImported(final Importer importer,
+            final long datasetId) throws Exception {
+        final Gateway gw = importer.connection.getGateway();
+        final SecurityContext ctx = importer.connection.getSecurtiyContext();
+        final ParametersI params = new ParametersI();
+        params.addId(datasetId);
+        final Map<String, List<Long>> imported = new HashMap<>();
+        for (final List<RType> row : gw.getQueryService(ctx).projection(
+                "select fe.clientPath, i.id from DatasetImageLink l join l.child i "
+                        + "join i.fileset fs join fs.usedFiles fe where l.parent.id = :id",
+                params)) {
+            imported.computeIfAbsent((String) rtypes.unwrap(row.get(0)), k -> new ArrayList<>())
+                    .add((Long) rtypes.unwrap(row.get(1)));
+        }
+        return imported;
+    }
+
+    /**
+     * @return the path as recorded in the fileset entries, without drive and
+     *         leading separator
+     */
+    private static String toClientPath(final String path) {
+        String p = new File(path).getAbsolutePath().replace('\\', '/');
+        if (p.length() > 1 && p.charAt(1) == ':') {
+            p = p.substring(2);
+        }
+        while (p.startsWith("/")) {
+            p = p.substring(1);
+        }
+        return p;
+    }
+
+    private DataCell[] toCells(final Import next, final String uriFormat)
+            throws InterruptedException {
+        final DataCell missing = DataType.getMissingCell();
+        if (next.result == null) {
+            if (next.existing == null) {
+                return new DataCell[] { missing, missing, missing, missing, missing, missing };
+            }
+            return new DataCell[] { new StringCell(SKIPPED), toUris(next.existing, uriFormat),
+                    missing, missing, missing, new StringCell("Already imported") };
+        }
+        try {
+            final Result r = next.result.get();
+            return new DataCell[] { new StringCell(IMPORTED), toUris(r.imageIds, uriFormat),
+                    new LongCell(r.bytes), new DoubleCell(r.uploadNanos / 1e9),
+                    new DoubleCell(r.uploadNanos == 0 ? 0 : r.bytes * 1e3 / r.uploadNanos),
+                    missing };
+        } catch (final ExecutionException e) {
+            final String msg = "Could not import file of row " + next.row.getKey() + ": "
+                    + e.getCause().getMessage();
+            LOGGER.debug(msg, e.getCause());
+            setWarningMessage("Some files could not be imported, see the status column");
+            return new DataCell[] { new StringCell(FAILED), missing, missing, missing, missing,
+                    new StringCell(String.valueOf(e.getCause().getMessage())) };
+        }
+    }
+
+    private static DataCell toUris(final List<Long> imageIds, final String uriFormat) {
+        final List<StringCell> uris = new ArrayList<>(imageIds.size());
+        imageIds.forEach(id -> uris.add(new StringCell(uriFormat + id)));
+        return CollectionCellFactory.createListCell(uris);
+    }
+
+    private DataTableSpec createOutSpec(final DataTableSpec inSpec) {
+        final DataColumnSpec[] specs = {
+                new DataColumnSpecCreator("Import Status", StringCell.TYPE).createSpec(),
+                new DataColumnSpecCreator("OMERO URIs", ListCell.getCollectionType(StringCell.TYPE))
+                        .createSpec(),
+                new DataColumnSpecCreator("Size [bytes]", LongCell.TYPE).createSpec(),
+                new DataColumnSpecCreator("Upload Time [s]", DoubleCell.TYPE).createSpec(),
+                new DataColumnSpecCreator("Upload Throughput [MB/s]", DoubleCell.TYPE).createSpec(),
+                new DataColumnSpecCreator("Import Message", StringCell.TYPE).createSpec() };
+        return new DataTableSpec(inSpec, new DataTableSpec(specs));
+    }
+
+    @Override
+    protected PortObjectSpec[] configure(final PortObjectSpec[] inSpecs)
+            throws InvalidSettingsException {
+        if (inSpecs[0] == null) {
+            throw new InvalidSettingsException("An Omero Connection is required!");
+        }
+        final DataTableSpec inSpec = (DataTableSpec) inSpecs[1];
+        final int idx = inSpec.findColumnIndex(pathColumnModel.getStringValue());
+        if (idx < 0 || !inSpec.getColumnSpec(idx).getType().isCompatible(StringValue.class)) {
+            throw new InvalidSettingsException("Please select a column with file paths");
+        }
+        try {
+            OmeroUtils.parseId(datasetModel.getStringValue(), "dataset");
+        } catch (final IllegalArgumentException e) {
+            throw new InvalidSettingsException(e.getMessage(), e);
+        }
+
+        return new PortObjectSpec[] { createOutSpec(inSpec) };
+    }
+
+    @Override
+    protected void saveSettingsTo(final NodeSettingsWO settings) {
+        settingsModels.forEach(m -> m.saveSettingsTo(settings));
+    }
+
+    @Override
+    protected void validateSettings(final NodeSettingsRO settings) throws InvalidSettingsException {
+        for (final SettingsModel m : settingsModels) {
+            m.validateSettings(settings);
+        }
+    }
+
+    @Override
+    protected void loadValidatedSettingsFrom(final NodeSettingsRO settings)
+            throws InvalidSettingsException {
+        for (final SettingsModel m : settingsModels) {
+            m.loadSettingsFrom(settings);
+        }
+    }
+
+    @Override
+    protected void reset() {
+        // not needed
+    }
+
+    @Override
+    protected void loadInternals(final File nodeInternDir, final ExecutionMonitor exec)
+            throws IOException, CanceledExecutionException {
+        // not needed
+    }
+
+    @Override
+    protected void saveInternals(final File nodeInternDir, final ExecutionMonitor exec)
+            throws IOException, CanceledExecutionException {
+        // not needed
+    }
+
+    /**
+     * A session with its import library, used by one file at a time.
+     */
+    private static final class Importer implements IObserver {
+
+        private final OmeroConnection connection;
+        private final OMEROWrapper reader;
+        private final ImportLibrary library;
+
+        private long uploadStart;
+        private long uploadNanos;
+
+        private Importer(final OmeroConnectionInformation info) throws Exception {
+            connection = new OmeroConnection(info);
+            connection.open();
+            reader = new OMEROWrapper(new ImportConfig());
+            library = new ImportLibrary(
+                    connection.getGateway().getImportStore(connection.getSecurtiyContext()),
+                    reader);
+            library.addObserver(this);
+        }
+
+        private Result importFile(final String path, final long datasetId) throws Exception {
+            final ImportCandidates candidates =
+                    new ImportCandidates(reader, new String[] { path }, this);
+            final List<ImportContainer> containers = candidates.getContainers();
+            if (containers.isEmpty()) {
+                throw new IOException("No importable image found in " + path);
+            }
+            uploadNanos = 0;
+            final Result result = new Result();
+            for (int i = 0; i < containers.size(); i++) {
+                final ImportContainer ic = containers.get(i);
+                ic.setTarget(new DatasetI(datasetId, false));
+                result.bytes += ic.getUsedFilesTotalSize();
+                final List<Pixels> pixels;
+                try {
+                    pixels = library.importImage(ic, i, i, containers.size());
+                } catch (final Exception | Error e) {
+                    throw e;
+                } catch (final Throwable t) {
+                    throw new IOException(t.getMessage(), t);
+                }
+                for (final Pixels p : pixels) {
+                    result.imageIds.add(p.getImage().getId().getValue());
+                }
+            }
+            result.uploadNanos = uploadNanos;
+            return result;
+        }
+
+        @Override
+        public void update(final IObservable observable, final ImportEvent event) {
+            if (event instanceof ImportEvent.FILESET_UPLOAD_START) {
+                uploadStart = System.nanoTime();
+            } else if (event instanceof ImportEvent.FILESET_UPLOAD_END) {
+                uploadNanos += System.nanoTime() - uploadStart;
+            }
+        }
+
+        private void close() {
+            try {
+                reader.close();
+            } catch (final IOException e) {
+                LOGGER.debug("Could not close reader", e);
+            }
+            try {
+                // return the session to the pool
+                connection.close();
+            } catch (final Exception e) {
+                LOGGER.debug("Could not close OMERO connection", e);
+            }
+        }
+    }
+
+    /** The outcome of a successful import. */
+    private static final class Result {
+
+        private final List<Long> imageIds = new ArrayList<>();
+        private long bytes;
+        private long uploadNanos;
+    }
+
+    /**
+     * A row and its running import, or the images it has been imported to
+     * before.
+     */
+    private static final class Import {
+
+        private final DataRow row;
+        private final Future<Result> result;
+        private final List<Long> existing;
+
+        private Import(final DataRow row, final Future<Result> result, final List<Long> existing) {
+            this.row = row;
+            this.result = result;
+            this.existing = existing;
+        }
+    }
+}
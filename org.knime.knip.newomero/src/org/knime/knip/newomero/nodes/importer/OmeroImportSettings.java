@@ -0,0 +1,31 @@
+package org.knime.knip.newomero.nodes.importer;
+
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+
+/**
+ * The settings of the OMERO import node.
+ */
+public class OmeroImportSettings {
+
+    private OmeroImportSettings() {
+        // Utility class
+    }
+
+    public static SettingsModelString createPathColumnModel() {
+        return new SettingsModelString("Path Column", "");
+    }
+
+    public static SettingsModelString createDatasetModel() {
+        return new SettingsModelString("Target Dataset", "");
+    }
+
+    public static SettingsModelIntegerBounded createConcurrentFilesModel() {
+        return new SettingsModelIntegerBounded("Concurrent Files", 4, 1, 32);
+    }
+
+    public static SettingsModelBoolean createSkipImportedModel() {
+        return new SettingsModelBoolean("Skip Imported Files", true);
+    }
+}
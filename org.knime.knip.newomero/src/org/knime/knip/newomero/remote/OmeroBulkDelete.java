@@ -0,0 +1,324 @@
+package org.knime.knip.newomero.remote;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.knime.core.node.NodeLogger;
+import org.knime.knip.core.util.EnumUtils;
+import org.knime.knip.newomero.port.OmeroConnectionInformation;
+
+import omero.RType;
+import omero.rtypes;
+import omero.cmd.CmdCallbackI;
+import omero.cmd.Delete2Response;
+import omero.cmd.ERR;
+import omero.cmd.Response;
+import omero.gateway.Gateway;
+import omero.gateway.SecurityContext;
+import omero.gateway.util.Requests;
+import omero.sys.ParametersI;
+
+/**
+ * Deletes many projects, datasets and images given by their ome:// URIs. The
+ * objects are not loaded, one graph delete request is submitted per type, in
+ * the order images, datasets, projects, and the requests are polled in the
+ * background. Blocking calls run on a worker pool, so a slow login or query
+ * does not hold up the polling of other deletes. If a request fails, its IDs
+ * are deleted one by one so every URI gets its own result.
+ */
+public final class OmeroBulkDelete {
+
+    private static final NodeLogger LOGGER = NodeLogger.getLogger(OmeroBulkDelete.class);
+
+    /** interval in which running requests are polled. */
+    private static final long POLL_INTERVAL_MS = 500;
+
+    /** number of IDs checked by a single query. */
+    private static final int QUERY_SIZE = 1000;
+
+    /** types in the order they are deleted, children first. */
+    private static final OmeroRemoteFileType[] ORDER =
+            { OmeroRemoteFileType.IMAGE, OmeroRemoteFileType.DATASET, OmeroRemoteFileType.PROJECT };
+
+    /** only schedules the polls, never blocks. */
+    private static final ScheduledExecutorService POLLER =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread t = new Thread(r, "OMERO delete poller");
+                t.setDaemon(true);
+                return t;
+            });
+
+    /** runs the login, queries, submits and polls of all deletes. */
+    private static final ExecutorService WORKERS = Executors.newCachedThreadPool(r -> {
+        final Thread t = new Thread(r, "OMERO delete worker");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final OmeroConnectionInformation info;
+    private final OmeroConnection connection;
+    private final Map<URI, Result> results = new LinkedHashMap<>();
+
+    /** IDs to delete per type and the URIs they were given by. */
+    private final Map<OmeroRemoteFileType, Map<Long, URI>> targets =
+            new EnumMap<>(OmeroRemoteFileType.class);
+
+    private OmeroBulkDelete(final OmeroConnectionInformation info) {
+        this.info = info;
+        this.connection = new OmeroConnection(info);
+    }
+
+    /**
+     * Deletes the objects including their contents, like the OMERO clients
+     * do.
+     *
+     * @param info the server and user
+     * @param uris the URIs of the projects, datasets and images to delete
+     * @return completes with the result of every URI in the given order once
+     *         all requests have finished
+     */
+    public static CompletableFuture<Map<URI, Result>> delete(
+            final OmeroConnectionInformation info, final Collection<URI> uris) {
+        final OmeroBulkDelete delete = new OmeroBulkDelete(info);
+        uris.forEach(delete::addTarget);
+        return delete.run();
+    }
+
+    private void addTarget(final URI uri) {
+        results.put(uri, null);
+        final String[] tokens = uri.getPath() == null ? new String[0] : uri.getPath().split("/");
+        try {
+            if (tokens.length == 3) {
+                final OmeroRemoteFileType type =
+                        EnumUtils.valueForName(tokens[1], OmeroRemoteFileType.values());
+                if (type != null && type != OmeroRemoteFileType.ROOT) {
+                    targets.computeIfAbsent(type, k -> new LinkedHashMap<>())
+                            .put(Long.parseLong(tokens[2]), uri);
+                    return;
+                }
+            }
+        } catch (final IllegalArgumentException e) {
+            // reported below
+        }
+        results.put(uri, Result.failed("Not a project, dataset or image"));
+    }
+
+    private CompletableFuture<Map<URI, Result>> run() {
+        if (targets.isEmpty()) {
+            return CompletableFuture.completedFuture(results);
+        }
+        final CompletableFuture<Void> done = CompletableFuture.runAsync(() -> {
+            try {
+                connection.open();
+                for (final Map.Entry<OmeroRemoteFileType, Map<Long, URI>> e : targets.entrySet()) {
+                    removeMissing(e.getKey(), e.getValue());
+                }
+            } catch (final Exception e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }, WORKERS);
+
+        CompletableFuture<Void> chain = done;
+        for (final OmeroRemoteFileType type : ORDER) {
+            chain = chain.thenCompose(v -> deleteType(type));
+        }
+        return chain.handle((v, t) -> {
+            try {
+                connection.close();
+            } catch (final Exception e) {
+                LOGGER.debug("Could not close OMERO connection", e);
+            }
+            // browsing no longer shows the deleted objects
+            OmeroHierarchyIndex.invalidate(info);
+            if (t != null) {
+                final Throwable cause = t.getCause() == null ? t : t.getCause();
+                results.replaceAll((uri, r) -> r == null ? Result.failed(cause.getMessage()) : r);
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Reports IDs that do not exist, or are not visible to the user, as
+     * failed and drops them from the request.
+     */
+    private void removeMissing(final OmeroRemoteFileType type, final Map<Long, URI> ids)
+            throws Exception {
+        final Gateway gw = connection.getGateway();
+        final SecurityContext ctx = connection.getSecurtiyContext();
+        final Set<Long> found = new HashSet<>();
+        final List<Long> all = new ArrayList<>(ids.keySet());
+        for (int i = 0; i < all.size(); i += QUERY_SIZE) {
+            final ParametersI params = new ParametersI();
+            params.addIds(all.subList(i, Math.min(all.size(), i + QUERY_SIZE)));
+            for (final List<RType> row : gw.getQueryService(ctx).projection(
+                    "select o.id from " + className(type) + " o where o.id in (:ids)", params)) {
+                found.add(((Number) rtypes.unwrap(row.get(0))).longValue());
+            }
+        }
+        ids.entrySet().removeIf(e -> {
+            if (!found.contains(e.getKey())) {
+                results.put(e.getValue(), Result.failed("Not found"));
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Deletes all IDs of the type with one request, falls back to one
+     * request per ID if it fails.
+     */
+    private CompletableFuture<Void> deleteType(final OmeroRemoteFileType type) {
+        final Map<Long, URI> ids = targets.getOrDefault(type, Collections.emptyMap());
+        if (ids.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return submit(type, ids.keySet()).thenCompose(rsp -> {
+            if (rsp instanceof Delete2Response) {
+                record(type, ids, (Delete2Response) rsp);
+                return CompletableFuture.completedFuture(null);
+            }
+            if (ids.size() == 1) {
+                final URI uri = ids.values().iterator().next();
+                results.put(uri, Result.failed(describe(rsp)));
+                return CompletableFuture.completedFuture(null);
+            }
+            LOGGER.debug("Deleting " + ids.size() + " objects of type " + type
+                    + " failed, deleting them one by one: " + describe(rsp));
+            CompletableFuture<Void> single = CompletableFuture.completedFuture(null);
+            for (final Map.Entry<Long, URI> e : ids.entrySet()) {
+                single = single.thenCompose(v -> submit(type, Collections.singleton(e.getKey()))
+                        .thenAccept(r -> {
+                            if (r instanceof Delete2Response) {
+                                record(type, Collections.singletonMap(e.getKey(), e.getValue()),
+                                        (Delete2Response) r);
+                            } else {
+                                results.put(e.getValue(), Result.failed(describe(r)));
+                            }
+                        }));
+            }
+            return single;
+        });
+    }
+
+    private void record(final OmeroRemoteFileType type, final Map<Long, URI> ids,
+            final Delete2Response rsp) {
+        final Set<Long> deleted = new HashSet<>();
+        final String suffix = "." + className(type);
+        rsp.deletedObjects.forEach((cls, list) -> {
+            if (cls.endsWith(suffix) || cls.equals(className(type))) {
+                deleted.addAll(list);
+            }
+        });
+        ids.forEach((id, uri) -> results.put(uri,
+                deleted.contains(id) ? Result.DELETED : Result.failed("Not deleted")));
+    }
+
+    /**
+     * Submits a delete request and polls it until it has finished.
+     *
+     * @return completes with the response of the server
+     */
+    private CompletableFuture<Response> submit(final OmeroRemoteFileType type,
+            final Collection<Long> ids) {
+        final CompletableFuture<Response> response = new CompletableFuture<>();
+        WORKERS.execute(() -> {
+            try {
+                final CmdCallbackI cb = connection.getGateway().submit(
+                        connection.getSecurtiyContext(),
+                        Requests.delete().target(className(type)).id(ids).build());
+                poll(cb, response);
+            } catch (final Throwable t) {
+                response.completeExceptionally(t);
+            }
+        });
+        return response;
+    }
+
+    private static void poll(final CmdCallbackI cb, final CompletableFuture<Response> response) {
+        try {
+            cb.poll();
+            final Response rsp = cb.getResponse();
+            if (rsp == null) {
+                POLLER.schedule(() -> WORKERS.execute(() -> poll(cb, response)),
+                        POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                return;
+            }
+            cb.close(true);
+            response.complete(rsp);
+        } catch (final Throwable t) {
+            cb.close(true);
+            response.completeExceptionally(t);
+        }
+    }
+
+    private static String describe(final Response rsp) {
+        if (rsp instanceof ERR) {
+            final ERR err = (ERR) rsp;
+            final String message = err.parameters == null ? null : err.parameters.get("message");
+            return err.category + " " + err.name + (message == null ? "" : ": " + message);
+        }
+        return String.valueOf(rsp);
+    }
+
+    private static String className(final OmeroRemoteFileType type) {
+        switch (type) {
+        case IMAGE:
+            return "Image";
+        case DATASET:
+            return "Dataset";
+        case PROJECT:
+            return "Project";
+        default:
+            throw new IllegalArgumentException("Can not delete " + type);
+        }
+    }
+
+    /**
+     * The outcome of deleting a single object.
+     */
+    public static final class Result {
+
+        static final Result DELETED = new Result(true, null);
+
+        private final boolean deleted;
+        private final String message;
+
+        private Result(final boolean deleted, final String message) {
+            this.deleted = deleted;
+            this.message = message;
+        }
+
+        static Result failed(final String message) {
+            return new Result(false, message);
+        }
+
+        /**
+         * @return true if the object has been deleted
+         */
+        public boolean isDeleted() {
+            return deleted;
+        }
+
+        /**
+         * @return why the object has not been deleted, null if it has been
+         */
+        public String getMessage() {
+            return message;
+        }
+    }
+}
@@ -5,68 +5,60 @@ import org.knime.base.filehandling.remote.files.Connection;
 import org.knime.knip.newomero.port.OmeroConnectionInformation;
 
 import omero.gateway.Gateway;
-import omero.gateway.LoginCredentials;
 import omero.gateway.SecurityContext;
-import omero.gateway.exception.DSOutOfServiceException;
-import omero.gateway.model.ExperimenterData;
-import omero.log.SimpleLogger;
 
+/**
+ * A connection to an OMERO server. The session is leased from the
+ * {@link OmeroSessionPool} on open and returned to it on close, so
+ * consecutive connections with the same connection information share one
+ * login.
+ */
 public class OmeroConnection extends Connection {
 
-	private final LoginCredentials creds;
-	private final Gateway gateway;
-	private SecurityContext ctx;
+	private final OmeroConnectionInformation info;
+	private OmeroSessionPool.Lease lease;
 
 	public OmeroConnection(ConnectionInformation info) {
-		gateway = new Gateway(new SimpleLogger()); // FIXME Better logger
-		
-		OmeroConnectionInformation oInfo = (OmeroConnectionInformation) info;
-
-		creds = new LoginCredentials();
-		creds.getServer().setHostname(oInfo.getHost());
-		if (oInfo.getPort() > 0) {
-			creds.getServer().setPort(oInfo.getPort());
-		}
-		
-		creds.getUser().setUsername(oInfo.getUser());
-		creds.getUser().setPassword(oInfo.getPassword());
-		creds.setEncryption(oInfo.getUseEncryption());
+		this.info = (OmeroConnectionInformation) info;
 	}
 
 	@Override
 	public void open() throws Exception {
-		ExperimenterData user = gateway.connect(creds);
-		ctx = new SecurityContext(user.getGroupId());
+		if (lease != null && !lease.isAlive()) {
+			// expired on the server, log in again
+			lease.invalidate();
+			lease = null;
+		}
+		if (lease == null) {
+			lease = OmeroSessionPool.getInstance().lease(info);
+		}
 	}
 
 	@Override
 	public boolean isOpen() {
-		boolean connected;
-		try {
-			connected = gateway.isConnected() || gateway.isAlive(ctx);
-		} catch (DSOutOfServiceException e) {
-			return false;
-		}
-		return connected;
+		return lease != null && lease.getGateway().isConnected();
 	}
 
 	@Override
 	public void close() throws Exception {
-		gateway.disconnect();
+		if (lease != null) {
+			lease.close();
+			lease = null;
+		}
 	}
 
 	/**
 	 * @return the gateway used in this connection
 	 */
 	public Gateway getGateway() {
-		return gateway;
+		return lease.getGateway();
 	}
 
 	/**
 	 * @return the security context used in this connection
 	 */
 	public SecurityContext getSecurtiyContext() {
-		return ctx;
+		return lease.getSecurityContext();
 	}
 
 }
@@ -0,0 +1,430 @@
+package org.knime.knip.newomero.remote;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.knime.knip.newomero.port.OmeroConnectionInformation;
+
+import omero.RType;
+import omero.ServerError;
+import omero.rtypes;
+import omero.api.IQueryPrx;
+import omero.gateway.Gateway;
+import omero.gateway.SecurityContext;
+import omero.gateway.exception.DSOutOfServiceException;
+import omero.sys.ParametersI;
+
+/**
+ * Cached view of the project, dataset and image hierarchy of an OMERO server,
+ * shared by all remote files of the same connection information. Only IDs,
+ * names and sizes are held. The root listing is loaded with a few projection
+ * queries that also resolve the datasets of every project, the images of a
+ * dataset are loaded page wise on first access. Listings expire after
+ * {@link #TTL_MS} and can be invalidated explicitly after the hierarchy has
+ * been modified. Listings are loaded without holding the lock of the index,
+ * so cache hits of other threads do not wait for the server. The index of a
+ * connection that has not been used for {@link #TTL_MS}, whose listings have
+ * all expired, is dropped.
+ *
+ * Connection information used as key must not be modified afterwards.
+ */
+public final class OmeroHierarchyIndex {
+
+    /** time after which a listing is loaded again. */
+    private static final long TTL_MS = TimeUnit.MINUTES.toMillis(2);
+
+    /** number of images fetched by a single query. */
+    private static final int PAGE_SIZE = 1000;
+
+    /** datasets with more images are listed page wise on every access. */
+    private static final int MAX_CACHED_IMAGES = 100000;
+
+    private static final Map<OmeroConnectionInformation, OmeroHierarchyIndex> INDEXES =
+            new HashMap<>();
+
+    /** the root and the projects, null if not loaded. */
+    private RootListing root;
+
+    /** incremented by {@link #clear()}, listings loaded before are dropped. */
+    private long generation;
+
+    /** time of the last {@link #getInstance(OmeroConnectionInformation)}. */
+    private long lastAccess = System.currentTimeMillis();
+
+    /** images by dataset ID. */
+    private final Map<Long, Listing> datasets = new HashMap<>();
+
+    /**
+     * size in bytes of the listed images, expires like the listings and holds
+     * at most {@link #MAX_CACHED_IMAGES} images, the least recently listed are
+     * dropped first.
+     */
+    private final Map<Long, ImageSize> imageSizes = new LinkedHashMap<Long, ImageSize>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Long, ImageSize> eldest) {
+            return size() > MAX_CACHED_IMAGES;
+        }
+    };
+
+    private OmeroHierarchyIndex() {
+    }
+
+    /**
+     * @param info the server and user whose hierarchy is indexed
+     * @return the index of the connection
+     */
+    public static OmeroHierarchyIndex getInstance(final OmeroConnectionInformation info) {
+        synchronized (INDEXES) {
+            final long now = System.currentTimeMillis();
+            INDEXES.values().removeIf(index -> now - index.lastAccess >= TTL_MS);
+            final OmeroHierarchyIndex index =
+                    INDEXES.computeIfAbsent(info, k -> new OmeroHierarchyIndex());
+            index.lastAccess = now;
+            return index;
+        }
+    }
+
+    /**
+     * Drops all cached listings of a connection, e.g. after projects, datasets
+     * or images have been created or deleted.
+     *
+     * @param info the server and user whose hierarchy has changed
+     */
+    public static void invalidate(final OmeroConnectionInformation info) {
+        final OmeroHierarchyIndex index;
+        synchronized (INDEXES) {
+            index = INDEXES.get(info);
+        }
+        if (index != null) {
+            index.clear();
+        }
+    }
+
+    /**
+     * Drops all cached listings.
+     */
+    public synchronized void clear() {
+        generation++;
+        root = null;
+        datasets.clear();
+        imageSizes.clear();
+    }
+
+    /**
+     * @param gw gateway of a logged in session
+     * @param ctx the security context of the session
+     * @return the projects and the datasets that do not belong to a project
+     * @throws DSOutOfServiceException if the session is not usable
+     * @throws ServerError if a query fails
+     */
+    public List<Entry> listRoot(final Gateway gw, final SecurityContext ctx)
+            throws DSOutOfServiceException, ServerError {
+        return getRoot(gw, ctx).root.entries;
+    }
+
+    /**
+     * @param gw gateway of a logged in session
+     * @param ctx the security context of the session
+     * @param projectId the OMERO project ID
+     * @return the datasets of the project
+     * @throws DSOutOfServiceException if the session is not usable
+     * @throws ServerError if a query fails
+     */
+    public List<Entry> listProject(final Gateway gw, final SecurityContext ctx,
+            final long projectId) throws DSOutOfServiceException, ServerError {
+        final Listing listing = getRoot(gw, ctx).projects.get(projectId);
+        return listing == null ? Collections.emptyList() : listing.entries;
+    }
+
+    /**
+     * @return the cached root listing, loaded outside of the lock if expired
+     */
+    private RootListing getRoot(final Gateway gw, final SecurityContext ctx)
+            throws DSOutOfServiceException, ServerError {
+        final long loadGeneration;
+        synchronized (this) {
+            if (root != null && isValid(root.root)) {
+                return root;
+            }
+            loadGeneration = generation;
+        }
+        final RootListing loaded = loadRoot(gw.getQueryService(ctx));
+        synchronized (this) {
+            // drop a listing that may predate a concurrent invalidation
+            if (generation == loadGeneration) {
+                root = loaded;
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * @param gw gateway of a logged in session
+     * @param ctx the security context of the session
+     * @param datasetId the OMERO dataset ID
+     * @return the images of the dataset
+     * @throws DSOutOfServiceException if the session is not usable
+     * @throws ServerError if a query fails
+     */
+    public List<Entry> listDataset(final Gateway gw, final SecurityContext ctx,
+            final long datasetId) throws DSOutOfServiceException, ServerError {
+        final List<Entry> images = new ArrayList<>();
+        forEachImage(gw, ctx, datasetId, images::add);
+        return images;
+    }
+
+    /**
+     * Hands the images of a dataset to the consumer in the order of their
+     * IDs. Unless the dataset is cached, the images are fetched in pages of
+     * {@link #PAGE_SIZE} and each page is passed on as soon as it arrives, so
+     * the consumer can start before the listing is complete. A completely
+     * listed dataset is cached if it holds at most
+     * {@link #MAX_CACHED_IMAGES} images.
+     *
+     * @param gw gateway of a logged in session
+     * @param ctx the security context of the session
+     * @param datasetId the OMERO dataset ID
+     * @param consumer receives the images, may throw a runtime exception to
+     *            stop the listing
+     * @throws DSOutOfServiceException if the session is not usable
+     * @throws ServerError if a query fails
+     */
+    public void forEachImage(final Gateway gw, final SecurityContext ctx, final long datasetId,
+            final Consumer<Entry> consumer) throws DSOutOfServiceException, ServerError {
+        final Listing cached;
+        final long loadGeneration;
+        synchronized (this) {
+            cached = datasets.get(datasetId);
+            loadGeneration = generation;
+        }
+        if (isValid(cached)) {
+            cached.entries.forEach(consumer);
+            return;
+        }
+
+        final IQueryPrx query = gw.getQueryService(ctx);
+        List<Entry> images = new ArrayList<>();
+        long lastId = -1;
+        List<List<RType>> page;
+        do {
+            // keyset paging, the cost of a page does not grow with its offset
+            final ParametersI params = new ParametersI();
+            params.addId(datasetId);
+            params.addLong("last", lastId);
+            params.page(0, PAGE_SIZE);
+            page = query.projection(
+                    "select i.id, i.name, p.sizeX, p.sizeY, p.sizeZ, p.sizeC, p.sizeT, "
+                            + "pt.bitSize from DatasetImageLink l join l.child i "
+                            + "left outer join i.pixels p left outer join p.pixelsType pt "
+                            + "where l.parent.id = :id "
+                            + "and i.id > :last order by i.id",
+                    params);
+
+            final List<Entry> entries = new ArrayList<>(page.size());
+            for (final List<RType> row : page) {
+                final long imageId = longValue(row.get(0));
+                // images with several pixels sets are listed once
+                if (imageId != lastId) {
+                    entries.add(toImage(row));
+                    lastId = imageId;
+                }
+            }
+            entries.forEach(consumer);
+            if (images != null) {
+                images.addAll(entries);
+                if (images.size() > MAX_CACHED_IMAGES) {
+                    images = null;
+                }
+            }
+        } while (page.size() == PAGE_SIZE);
+
+        if (images != null) {
+            synchronized (this) {
+                if (generation == loadGeneration) {
+                    datasets.put(datasetId, new Listing(images));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param imageId the OMERO image ID
+     * @return the size of the pixels of the image in bytes, -1 if the image
+     *         has not been listed
+     */
+    public synchronized long getImageSize(final long imageId) {
+        final ImageSize size = imageSizes.get(imageId);
+        if (size == null || System.currentTimeMillis() - size.loaded >= TTL_MS) {
+            return -1;
+        }
+        return size.size;
+    }
+
+    private static RootListing loadRoot(final IQueryPrx query) throws ServerError {
+        final ParametersI params = new ParametersI();
+
+        // image count per dataset
+        final Map<Long, Long> imageCounts = new HashMap<>();
+        for (final List<RType> row : query.projection(
+                "select l.parent.id, count(l) from DatasetImageLink l group by l.parent.id",
+                params)) {
+            imageCounts.put(longValue(row.get(0)), longValue(row.get(1)));
+        }
+
+        // datasets of all projects at once
+        final Map<Long, List<Entry>> projectDatasets = new HashMap<>();
+        final Set<Long> linkedDatasets = new HashSet<>();
+        for (final List<RType> row : query.projection(
+                "select l.parent.id, l.child.id, l.child.name from ProjectDatasetLink l "
+                        + "order by l.child.id",
+                params)) {
+            final long datasetId = longValue(row.get(1));
+            linkedDatasets.add(datasetId);
+            projectDatasets.computeIfAbsent(longValue(row.get(0)), k -> new ArrayList<>())
+                    .add(new Entry(OmeroRemoteFileType.DATASET, datasetId,
+                            stringValue(row.get(2)), imageCounts.getOrDefault(datasetId, 0L)));
+        }
+
+        final List<Entry> entries = new ArrayList<>();
+        final Map<Long, Listing> projects = new HashMap<>();
+        for (final List<RType> row : query.projection(
+                "select p.id, p.name from Project p order by p.id", params)) {
+            final long projectId = longValue(row.get(0));
+            final List<Entry> children =
+                    projectDatasets.getOrDefault(projectId, Collections.emptyList());
+            projects.put(projectId, new Listing(children));
+            entries.add(new Entry(OmeroRemoteFileType.PROJECT, projectId,
+                    stringValue(row.get(1)), children.size()));
+        }
+        for (final List<RType> row : query.projection(
+                "select d.id, d.name from Dataset d order by d.id", params)) {
+            final long datasetId = longValue(row.get(0));
+            if (!linkedDatasets.contains(datasetId)) {
+                entries.add(new Entry(OmeroRemoteFileType.DATASET, datasetId,
+                        stringValue(row.get(1)), imageCounts.getOrDefault(datasetId, 0L)));
+            }
+        }
+        return new RootListing(new Listing(entries), projects);
+    }
+
+    private synchronized Entry toImage(final List<RType> row) {
+        final long imageId = longValue(row.get(0));
+        long size = -1;
+        if (row.get(2) != null) {
+            size = 1;
+            for (int i = 2; i < 7; i++) {
+                size *= longValue(row.get(i));
+            }
+            size = size * longValue(row.get(7)) / 8;
+            // re-insert, so the entry counts as recently listed
+            imageSizes.remove(imageId);
+            imageSizes.put(imageId, new ImageSize(size));
+        }
+        return new Entry(OmeroRemoteFileType.IMAGE, imageId, stringValue(row.get(1)), size);
+    }
+
+    private static boolean isValid(final Listing listing) {
+        return listing != null && System.currentTimeMillis() - listing.loaded < TTL_MS;
+    }
+
+    private static long longValue(final RType value) {
+        return ((Number) rtypes.unwrap(value)).longValue();
+    }
+
+    private static String stringValue(final RType value) {
+        final Object unwrapped = rtypes.unwrap(value);
+        return unwrapped == null ? "" : unwrapped.toString();
+    }
+
+    /** The size of an image and the time it was listed. */
+    private static final class ImageSize {
+
+        private final long size;
+        private final long loaded = System.currentTimeMillis();
+
+        private ImageSize(final long size) {
+            this.size = size;
+        }
+    }
+
+    /** The children of the root and the datasets of every project. */
+    private static final class RootListing {
+
+        private final Listing root;
+        private final Map<Long, Listing> projects;
+
+        private RootListing(final Listing root, final Map<Long, Listing> projects) {
+            this.root = root;
+            this.projects = projects;
+        }
+    }
+
+    /** The children of a node and the time they were loaded. */
+    private static final class Listing {
+
+        private final List<Entry> entries;
+        private final long loaded = System.currentTimeMillis();
+
+        private Listing(final List<Entry> entries) {
+            this.entries = Collections.unmodifiableList(entries);
+        }
+    }
+
+    /**
+     * A project, dataset or image of the hierarchy.
+     */
+    public static final class Entry {
+
+        private final OmeroRemoteFileType type;
+        private final long id;
+        private final String name;
+        private final long size;
+
+        private Entry(final OmeroRemoteFileType type, final long id, final String name,
+                final long size) {
+            this.type = type;
+            this.id = id;
+            this.name = name;
+            this.size = size;
+        }
+
+        /**
+         * @return the type of the entry
+         */
+        public OmeroRemoteFileType getType() {
+            return type;
+        }
+
+        /**
+         * @return the OMERO ID
+         */
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * @return the name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the number of children of a project or dataset, the size of
+         *         the pixels in bytes for an image or -1 if unknown
+         */
+        public long getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.knime.knip.newomero.remote;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.knime.core.node.NodeLogger;
+
+import omero.api.RawFileStorePrx;
+
+/**
+ * Streams an original file from the OMERO raw file store. The file is read in
+ * chunks of {@link #CHUNK_SIZE} bytes and the next {@link #READ_AHEAD}
+ * chunks are requested in the background while the current one is consumed,
+ * so parsing overlaps with the transfer and nothing is written to disk.
+ */
+final class OmeroRawFileInputStream extends InputStream {
+
+    private static final NodeLogger LOGGER = NodeLogger.getLogger(OmeroRawFileInputStream.class);
+
+    /** size of a single read request. */
+    static final int CHUNK_SIZE = 1 << 20;
+
+    /** number of chunks requested ahead of the consumer. */
+    static final int READ_AHEAD = 2;
+
+    private static final ExecutorService READERS = Executors.newCachedThreadPool(r -> {
+        final Thread t = new Thread(r, "OMERO raw file reader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final RawFileStorePrx store;
+    private final long size;
+    private final AutoCloseable onClose;
+
+    /** requested chunks in file order. */
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    /** offset of the next chunk to request. */
+    private long nextOffset;
+
+    private byte[] chunk = new byte[0];
+    private int pos;
+    private boolean closed;
+
+    /**
+     * @param store a raw file store with the file already set
+     * @param size the size of the file in bytes
+     * @param onClose closed together with the stream, e.g. the session lease
+     *            the store belongs to, must not be shared with other users
+     */
+    OmeroRawFileInputStream(final RawFileStorePrx store, final long size,
+            final AutoCloseable onClose) {
+        this.store = store;
+        this.size = size;
+        this.onClose = onClose;
+        requestChunks();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos >= chunk.length && !nextChunk()) {
+            return -1;
+        }
+        return chunk[pos++] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (pos >= chunk.length && !nextChunk()) {
+            return -1;
+        }
+        final int n = Math.min(len, chunk.length - pos);
+        System.arraycopy(chunk, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return chunk.length - pos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        awaitPending();
+        try {
+            store.close();
+        } catch (final Exception e) {
+            LOGGER.debug("Could not close raw file store", e);
+        }
+        try {
+            onClose.close();
+        } catch (final Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Waits for the requested chunks and drops them. A cancelled future does
+     * not wait for a read that is in flight, which would then run against a
+     * closed store or a session handed to another user.
+     */
+    private void awaitPending() {
+        boolean interrupted = Thread.interrupted();
+        for (final Future<byte[]> f : pending) {
+            while (true) {
+                try {
+                    f.get();
+                    break;
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                } catch (final ExecutionException e) {
+                    break;
+                }
+            }
+        }
+        pending.clear();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void requestChunks() {
+        while (pending.size() < READ_AHEAD && nextOffset < size) {
+            final long offset = nextOffset;
+            final int length = (int)Math.min(CHUNK_SIZE, size - offset);
+            pending.add(READERS.submit(() -> store.read(offset, length)));
+            nextOffset += length;
+        }
+    }
+
+    private boolean nextChunk() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        final Future<byte[]> next = pending.poll();
+        if (next == null) {
+            return false;
+        }
+        try {
+            chunk = next.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading from OMERO", e);
+        } catch (final ExecutionException e) {
+            throw new IOException("Could not read from OMERO: " + e.getCause().getMessage(),
+                    e.getCause());
+        }
+        pos = 0;
+        requestChunks();
+        return chunk.length > 0 || nextChunk();
+    }
+}
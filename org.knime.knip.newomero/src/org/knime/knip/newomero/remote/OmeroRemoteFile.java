@@ -10,13 +10,9 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.NoSuchElementException;
-import java.util.Set;
+import java.util.function.Consumer;
 
 import org.knime.base.filehandling.remote.connectioninformation.port.ConnectionInformation;
 import org.knime.base.filehandling.remote.files.ConnectionMonitor;
@@ -26,15 +22,14 @@ import org.knime.core.util.FileUtil;
 import org.knime.knip.newomero.port.OmeroConnectionInformation;
 import org.knime.knip.newomero.util.OmeroUtils;
 
+import omero.RLong;
+import omero.RType;
+import omero.ServerError;
+import omero.api.RawFileStorePrx;
 import omero.gateway.Gateway;
 import omero.gateway.SecurityContext;
-import omero.gateway.facility.BrowseFacility;
-import omero.gateway.facility.DataManagerFacility;
 import omero.gateway.facility.TransferFacility;
-import omero.gateway.model.DatasetData;
-import omero.gateway.model.ImageData;
-import omero.gateway.model.ProjectData;
-import omero.model.IObject;
+import omero.sys.ParametersI;
 
 public class OmeroRemoteFile extends RemoteFile<OmeroConnection> {
 
@@ -130,10 +125,19 @@ public class OmeroRemoteFile extends RemoteFile<OmeroConnection> {
 
     @Override
     public InputStream openInputStream() throws Exception {
+        if (type == OmeroRemoteFileType.IMAGE) {
+            final InputStream stream = openOriginalFileStream();
+            if (stream != null) {
+                return stream;
+            }
+        }
+
         // open connection
         open();
         final Gateway gw = getConnection().getGateway();
         final SecurityContext ctx = getConnection().getSecurtiyContext();
+
+        // multi-file formats and images without a fileset are exported
         final TransferFacility transfer = gw.getFacility(TransferFacility.class);
         final File tempdir = FileUtil.createTempDir("omeroDownload-");
         final List<File> imgs = transfer.downloadImage(ctx, tempdir.getAbsolutePath(), getId());
@@ -145,6 +149,44 @@ public class OmeroRemoteFile extends RemoteFile<OmeroConnection> {
         return new OmeroInputStream(imgs.get(0));
     }
 
+    /**
+     * Streams the original file of an image that has been imported from a
+     * single file. The stream leases its own session, the connection of this
+     * file is shared with other files and streams and stays open.
+     *
+     * @return the stream or null if the image has not exactly one original
+     *         file
+     */
+    private InputStream openOriginalFileStream() throws Exception {
+        final OmeroSessionPool.Lease lease = OmeroSessionPool.getInstance()
+                .lease((OmeroConnectionInformation) getConnectionInformation());
+        try {
+            final Gateway gw = lease.getGateway();
+            final SecurityContext ctx = lease.getSecurityContext();
+            final List<List<RType>> files = gw.getQueryService(ctx).projection(
+                    "select f.id, f.size from Image i join i.fileset fs "
+                            + "join fs.usedFiles fe join fe.originalFile f where i.id = :id",
+                    new ParametersI().addId(id));
+            if (files.size() != 1) {
+                lease.close();
+                return null;
+            }
+            final RawFileStorePrx store = gw.createRawFileStore(ctx);
+            try {
+                store.setFileId(((RLong)files.get(0).get(0)).getValue());
+            } catch (final ServerError e) {
+                store.close();
+                throw e;
+            }
+            // the stream returns its session when it is closed
+            return new OmeroRawFileInputStream(store, ((RLong)files.get(0).get(1)).getValue(),
+                    lease);
+        } catch (final Exception e) {
+            lease.close();
+            throw e;
+        }
+    }
+
     @Override
     public OutputStream openOutputStream() throws Exception {
         throw new UnsupportedOperationException(unsupportedMessage("open output stream"));
@@ -152,6 +194,13 @@ public class OmeroRemoteFile extends RemoteFile<OmeroConnection> {
 
     @Override
     public long getSize() throws Exception {
+        if (type == OmeroRemoteFileType.IMAGE) {
+            // known once the dataset of the image has been listed
+            final long size = getIndex().getImageSize(id);
+            if (size >= 0) {
+                return size;
+            }
+        }
         throw new UnsupportedOperationException(unsupportedMessage("get size"));
     }
 
@@ -162,36 +211,16 @@ public class OmeroRemoteFile extends RemoteFile<OmeroConnection> {
 
     @Override
     public boolean delete() throws Exception {
-        final Gateway gw = getConnection().getGateway();
-        final SecurityContext ctx = getConnection().getSecurtiyContext();
-        final BrowseFacility browse = gw.getFacility(BrowseFacility.class);
-        final DataManagerFacility dm = gw.getFacility(DataManagerFacility.class);
-
-        final List<Long> idList = Arrays.asList(id);
-
-        try {
-            IObject object = null;
-            switch (type) {
-            case IMAGE:
-                object = browse.getImage(ctx, id).asIObject();
-                break;
-            case PROJECT:
-                object = browse.getProjects(ctx, idList).iterator().next().asIObject();
-                break;
-            case DATASET:
-                object = browse.getDatasets(ctx, idList).iterator().next().asIObject();
-                break;
-            case ROOT:
-                throw new UnsupportedOperationException("Can not delete the root");
-            }
-
-            dm.delete(ctx, object);
-        } catch (final NoSuchElementException e) {
-            log.warn("Could not locate file on the server, maybe it has already been deleted?");
-            return false;
-        } catch (final Throwable e) {
-            log.warn("Could not delete: " + e.getMessage());
-            log.debug(e);
+        if (type == OmeroRemoteFileType.ROOT) {
+            throw new UnsupportedOperationException("Can not delete the root");
+        }
+        // no need to load the object, the graph delete works on the ID
+        final OmeroBulkDelete.Result result = OmeroBulkDelete
+                .delete((OmeroConnectionInformation) getConnectionInformation(),
+                        Collections.singletonList(getURI()))
+                .get().get(getURI());
+        if (!result.isDeleted()) {
+            log.warn("Could not delete " + getURI() + ": " + result.getMessage());
             return false;
         }
         return true;
@@ -200,74 +229,56 @@ public class OmeroRemoteFile extends RemoteFile<OmeroConnection> {
     @Override
     public RemoteFile<OmeroConnection>[] listFiles() throws Exception {
         final List<RemoteFile<OmeroConnection>> files = new ArrayList<>();
+        listFiles(files::add);
+        Collections.sort(files);
+        return files.toArray(new OmeroRemoteFile[files.size()]);
+    }
 
+    /**
+     * Hands the children to the consumer as they arrive. The images of a
+     * dataset are listed page wise in the order of their IDs, so they can be
+     * processed while the listing is still running. Unlike
+     * {@link #listFiles()} the children are neither collected nor sorted.
+     *
+     * @param consumer receives the children, may throw a runtime exception to
+     *            stop the listing
+     * @throws Exception if the children can not be listed
+     */
+    public void listFiles(final Consumer<RemoteFile<OmeroConnection>> consumer) throws Exception {
         if (getConnection() == null) {
             open();
         }
 
         final Gateway gw = getConnection().getGateway();
         final SecurityContext ctx = getConnection().getSecurtiyContext();
-        final BrowseFacility browse = gw.getFacility(BrowseFacility.class);
-
-        final List<Long> idList = Arrays.asList(id);
+        final OmeroHierarchyIndex index = getIndex();
 
         switch (type) {
         case IMAGE:
-            break; // leave files empty
+            break;
         case DATASET:
-            final Collection<ImageData> images = browse.getImagesForDatasets(ctx, idList);
-            images.forEach(i -> {
-                files.add(createFileFromImg(i));
-            });
+            index.forEachImage(gw, ctx, id, e -> consumer.accept(createFile(e)));
             break;
         case PROJECT:
-            final ProjectData project = browse.getProjects(ctx, idList).iterator().next();
-            final Set<DatasetData> datasets = project.getDatasets();
-            datasets.forEach(dataset -> {
-                files.add(createFileFromDataset(dataset));
-            });
+            index.listProject(gw, ctx, id).forEach(e -> consumer.accept(createFile(e)));
             break;
         case ROOT:
-            final Set<Long> setIds = new HashSet<>();
-
-            final Collection<ProjectData> projects = browse.getProjects(ctx);
-            projects.forEach(p -> {
-                files.add(createFileFromProject(p));
-                p.getDatasets().forEach(ds -> setIds.add(ds.getId()));
-            });
-
-            // ensure we only add datasets that are not children of a project
-            for (final DatasetData ds : browse.getDatasets(ctx)) {
-                if (!setIds.contains(ds.getId())) {
-                    files.add(createFileFromDataset(ds));
-                }
-            }
+            index.listRoot(gw, ctx).forEach(e -> consumer.accept(createFile(e)));
             break;
         default:
             throw new IllegalStateException("The datatype " + type.toString() + "is not supported");
         }
-        Collections.sort(files);
-        return files.toArray(new OmeroRemoteFile[files.size()]);
-    }
-
-    private RemoteFile<OmeroConnection> createFileFromProject(final ProjectData project) {
-        final URI uri = createOMEROURI(OmeroRemoteFileType.PROJECT, 0l, getConnectionInformation());
-        return new OmeroRemoteFile(uri, OmeroRemoteFileType.PROJECT, project.getId(),
-                getConnectionInformation(), getConnectionMonitor(), project.getName());
     }
 
-    private RemoteFile<OmeroConnection> createFileFromImg(final ImageData image) {
-        final URI uri = createOMEROURI(OmeroRemoteFileType.IMAGE, image.getId(),
-                getConnectionInformation());
-        return new OmeroRemoteFile(uri, OmeroRemoteFileType.IMAGE, image.getId(),
-                getConnectionInformation(), getConnectionMonitor(), image.getName());
+    private RemoteFile<OmeroConnection> createFile(final OmeroHierarchyIndex.Entry entry) {
+        final URI uri = createOMEROURI(entry.getType(), entry.getId(), getConnectionInformation());
+        return new OmeroRemoteFile(uri, entry.getType(), entry.getId(),
+                getConnectionInformation(), getConnectionMonitor(), entry.getName());
     }
 
-    private RemoteFile<OmeroConnection> createFileFromDataset(final DatasetData dataset) {
-        final URI uri = createOMEROURI(OmeroRemoteFileType.DATASET, dataset.getId(),
-                getConnectionInformation());
-        return new OmeroRemoteFile(uri, OmeroRemoteFileType.DATASET, dataset.getId(),
-                getConnectionInformation(), getConnectionMonitor(), dataset.getName());
+    private OmeroHierarchyIndex getIndex() {
+        return OmeroHierarchyIndex
+                .getInstance((OmeroConnectionInformation) getConnectionInformation());
     }
 
     private static URI createOMEROURI(final OmeroRemoteFileType type, final Long id,
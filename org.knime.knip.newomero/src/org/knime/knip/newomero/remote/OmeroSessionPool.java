@@ -0,0 +1,252 @@
+package org.knime.knip.newomero.remote;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.knime.core.node.NodeLogger;
+import org.knime.knip.newomero.port.OmeroConnectionInformation;
+
+import omero.gateway.Gateway;
+import omero.gateway.LoginCredentials;
+import omero.gateway.SecurityContext;
+import omero.gateway.exception.DSOutOfServiceException;
+import omero.gateway.model.ExperimenterData;
+import omero.log.SimpleLogger;
+
+/**
+ * Process wide pool of authenticated OMERO sessions, keyed by the connection
+ * information (host, port, user, password and encryption). Nodes lease a
+ * session instead of logging in, and return it when done. Idle sessions are
+ * pinged periodically to keep them alive and are closed after
+ * {@link #IDLE_TIMEOUT_MS}. Sessions that expired on the server are replaced
+ * by a fresh login when they are leased.
+ *
+ * Connection information used as key must not be modified afterwards.
+ */
+public final class OmeroSessionPool {
+
+    private static final NodeLogger LOGGER = NodeLogger.getLogger(OmeroSessionPool.class);
+
+    /** time after which an unused session is closed. */
+    private static final long IDLE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(5);
+
+    /** interval of the keep alive and eviction run. */
+    private static final long MAINTENANCE_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final OmeroSessionPool INSTANCE = new OmeroSessionPool();
+
+    /** idle sessions per connection, most recently used first. */
+    private final Map<OmeroConnectionInformation, Deque<Session>> idleSessions = new HashMap<>();
+
+    private OmeroSessionPool() {
+        final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread t = new Thread(r, "OMERO session pool");
+            t.setDaemon(true);
+            return t;
+        });
+        maintenance.scheduleWithFixedDelay(this::maintain, MAINTENANCE_INTERVAL_MS,
+                MAINTENANCE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the pool shared by all OMERO nodes
+     */
+    public static OmeroSessionPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Leases an authenticated session. An idle session is reused if it is
+     * still alive, otherwise a new one is created.
+     *
+     * @param info the server and user to connect to
+     * @return the lease, must be closed to return the session to the pool
+     * @throws DSOutOfServiceException if the login fails
+     */
+    public Lease lease(final OmeroConnectionInformation info) throws DSOutOfServiceException {
+        Session session;
+        while ((session = pollIdle(info)) != null) {
+            if (session.isAlive()) {
+                return new Lease(info, session);
+            }
+            // expired on the server
+            session.disconnect();
+        }
+        return new Lease(info, Session.connect(info));
+    }
+
+    /**
+     * Closes all idle sessions. Leased sessions are closed when they are
+     * returned.
+     */
+    public void clear() {
+        final List<Session> closing = new ArrayList<>();
+        synchronized (idleSessions) {
+            idleSessions.values().forEach(closing::addAll);
+            idleSessions.clear();
+        }
+        closing.forEach(Session::disconnect);
+    }
+
+    private Session pollIdle(final OmeroConnectionInformation info) {
+        synchronized (idleSessions) {
+            final Deque<Session> sessions = idleSessions.get(info);
+            return sessions == null ? null : sessions.pollFirst();
+        }
+    }
+
+    private void release(final OmeroConnectionInformation info, final Session session) {
+        session.lastUsed = System.currentTimeMillis();
+        synchronized (idleSessions) {
+            idleSessions.computeIfAbsent(info, k -> new ArrayDeque<>()).addFirst(session);
+        }
+    }
+
+    /**
+     * Closes sessions that have been idle for too long and pings the others.
+     */
+    private void maintain() {
+        final long now = System.currentTimeMillis();
+        final List<Session> expired = new ArrayList<>();
+        final List<Session> active = new ArrayList<>();
+        synchronized (idleSessions) {
+            final Iterator<Deque<Session>> it = idleSessions.values().iterator();
+            while (it.hasNext()) {
+                final Deque<Session> sessions = it.next();
+                sessions.removeIf(s -> {
+                    if (now - s.lastUsed > IDLE_TIMEOUT_MS) {
+                        expired.add(s);
+                        return true;
+                    }
+                    active.add(s);
+                    return false;
+                });
+                if (sessions.isEmpty()) {
+                    it.remove();
+                }
+            }
+        }
+        expired.forEach(Session::disconnect);
+        // a dead session is detected and replaced on its next lease
+        for (final Session s : active) {
+            s.isAlive();
+        }
+    }
+
+    /**
+     * An authenticated session that is leased from the pool.
+     */
+    public final class Lease implements AutoCloseable {
+
+        private final OmeroConnectionInformation info;
+        private Session session;
+
+        private Lease(final OmeroConnectionInformation info, final Session session) {
+            this.info = info;
+            this.session = session;
+        }
+
+        /**
+         * @return the gateway of the leased session
+         */
+        public Gateway getGateway() {
+            return checkedSession().gateway;
+        }
+
+        /**
+         * @return the security context of the leased session
+         */
+        public SecurityContext getSecurityContext() {
+            return checkedSession().ctx;
+        }
+
+        /**
+         * @return true if the leased session is still usable
+         */
+        public boolean isAlive() {
+            return session != null && session.isAlive();
+        }
+
+        /**
+         * Closes the leased session instead of returning it to the pool, e.g.
+         * after a failure that left it in an unknown state.
+         */
+        public void invalidate() {
+            if (session != null) {
+                session.disconnect();
+                session = null;
+            }
+        }
+
+        /**
+         * Returns the session to the pool.
+         */
+        @Override
+        public void close() {
+            if (session != null) {
+                release(info, session);
+                session = null;
+            }
+        }
+
+        private Session checkedSession() {
+            if (session == null) {
+                throw new IllegalStateException("The lease has already been closed");
+            }
+            return session;
+        }
+    }
+
+    /** A logged in gateway. */
+    private static final class Session {
+
+        private final Gateway gateway;
+        private final SecurityContext ctx;
+        private volatile long lastUsed;
+
+        private Session(final Gateway gateway, final SecurityContext ctx) {
+            this.gateway = gateway;
+            this.ctx = ctx;
+        }
+
+        private static Session connect(final OmeroConnectionInformation info)
+                throws DSOutOfServiceException {
+            final LoginCredentials creds = new LoginCredentials();
+            creds.getServer().setHostname(info.getHost());
+            if (info.getPort() > 0) {
+                creds.getServer().setPort(info.getPort());
+            }
+            creds.getUser().setUsername(info.getUser());
+            creds.getUser().setPassword(info.getPassword());
+            creds.setEncryption(info.getUseEncryption());
+
+            final Gateway gateway = new Gateway(new SimpleLogger()); // FIXME Better logger
+            final ExperimenterData user = gateway.connect(creds);
+            return new Session(gateway, new SecurityContext(user.getGroupId()));
+        }
+
+        private boolean isAlive() {
+            try {
+                return gateway.isConnected() && gateway.isAlive(ctx);
+            } catch (final DSOutOfServiceException e) {
+                return false;
+            }
+        }
+
+        private void disconnect() {
+            try {
+                gateway.disconnect();
+            } catch (final Exception e) {
+                LOGGER.debug("Could not close OMERO session", e);
+            }
+        }
+    }
+}
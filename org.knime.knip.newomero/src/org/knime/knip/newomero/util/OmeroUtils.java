@@ -1,5 +1,8 @@
 package org.knime.knip.newomero.util;
 
+import java.net.URI;
+import java.net.URISyntaxException;
+
 public class OmeroUtils {
 
 	private OmeroUtils() {
@@ -16,4 +19,36 @@ public class OmeroUtils {
 	public static String capitalize(String word) {
 		return Character.toString(Character.toTitleCase(word.charAt(0))) + word.substring(1);
 	}
+
+	/**
+	 * Extracts the ID from the path of an OMERO object, ex:
+	 * ome://user@host:4064/dataset/42 -> 42. Scheme and authority are
+	 * optional.
+	 *
+	 * @param path
+	 *            the path, e.g. published by the Create Omero Folder node.
+	 * @param type
+	 *            the expected type, ex: dataset.
+	 * @return the ID.
+	 * @throws IllegalArgumentException
+	 *             if the path does not point to an object of the type.
+	 */
+	public static long parseId(String path, String type) {
+		final String[] tokens;
+		try {
+			final String p = new URI(path.trim()).getPath();
+			tokens = p == null ? new String[0] : p.split("/");
+		} catch (final URISyntaxException e) {
+			throw new IllegalArgumentException("Invalid OMERO path: " + path, e);
+		}
+		if (tokens.length != 3 || !type.equalsIgnoreCase(tokens[1])) {
+			throw new IllegalArgumentException(
+					"The path \"" + path + "\" does not point to a " + type + ", expected ome://host/" + type + "/ID");
+		}
+		try {
+			return Long.parseLong(tokens[2]);
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid " + type + " ID in " + path, e);
+		}
+	}
 }
@@ -0,0 +1,153 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.omero.omerojava;
+
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Regression benchmark for the plane conversions of {@link Plane1D}. Decodes
+ * uint16 planes of 512x512, 2048x2048 and 8192x8192 pixels with
+ * <ul>
+ * <li>the column-major per-pixel loop Plane1D used before, reproduced
+ * here as baseline,</li>
+ * <li>the current row-major per-pixel loop
+ * ({@link Plane1D#Plane1D(ReadOnlyByteArray, int, int, int, BytesConverter)}
+ * ),</li>
+ * <li>the bulk decoding
+ * ({@link Plane1D#Plane1D(ReadOnlyByteArray, int, int, String, ByteOrder)}).
+ * </li>
+ * </ul>
+ * and prints the median time of each. Run with e.g.
+ * <code>java -Xmx2g org.knime.knip.omero.omerojava.Plane1DBenchmark</code>,
+ * the results of all variants are checked to be equal.
+ */
+public final class Plane1DBenchmark {
+
+	private static final int[] SIZES = { 512, 2048, 8192 };
+
+	private static final int WARMUP = 3;
+
+	private static final int RUNS = 7;
+
+	private Plane1DBenchmark() {
+		// main only
+	}
+
+	public static void main(final String[] args) {
+		final String type = PixelTypes.UINT_16;
+		final int bytesPerPixel = PixelTypes.pixelMap.get(type);
+		final BytesConverter converter = BytesConverter.getConverter(type);
+
+		System.out.println(String.format("%-10s %14s %14s %14s", "size",
+				"column-major", "row-major", "bulk"));
+		for (final int size : SIZES) {
+			final byte[] raw = new byte[size * size * bytesPerPixel];
+			new Random(42).nextBytes(raw);
+			final ReadOnlyByteArray data = new ReadOnlyByteArray(raw, 0,
+					raw.length);
+
+			final short[] expected = columnMajor(data, size, size,
+					bytesPerPixel, converter);
+			final Plane1D rowMajor = new Plane1D(data, size, size,
+					bytesPerPixel, converter);
+			final Plane1D bulk = new Plane1D(data, size, size, type,
+					ByteOrder.BIG_ENDIAN);
+			if (!Arrays.equals(expected, rowMajor.getPixelsArrayAsShort())
+					|| !Arrays.equals(expected, bulk.getPixelsArrayAsShort())) {
+				throw new IllegalStateException("results differ for size "
+						+ size);
+			}
+
+			final double baseline = median(() -> columnMajor(data, size,
+					size, bytesPerPixel, converter));
+			final double perPixel = median(rowMajor::getPixelsArrayAsShort);
+			final double decoded = median(bulk::getPixelsArrayAsShort);
+			System.out.println(String.format(
+					"%-10s %11.2f ms %11.2f ms %11.2f ms   (%.1fx, %.1fx)",
+					size + "x" + size, baseline, perPixel, decoded, baseline
+							/ perPixel, baseline / decoded));
+		}
+	}
+
+	/**
+	 * the conversion as Plane1D did it before, x in the outer loop.
+	 */
+	private static short[] columnMajor(final ReadOnlyByteArray data,
+			final int sizeX, final int sizeY, final int bytesPerPixel,
+			final BytesConverter strategy) {
+		final short[] mappedData = new short[sizeX * sizeY];
+		for (int x = 0; x < sizeX; x++) {
+			for (int y = 0; y < sizeY; y++) {
+				final int index = (sizeX * y) + x;
+				mappedData[index] = (short) strategy.pack(data, bytesPerPixel
+						* index, bytesPerPixel);
+			}
+		}
+		return mappedData;
+	}
+
+	/**
+	 * @return the median time of a run in milliseconds
+	 */
+	private static double median(final Runnable run) {
+		for (int i = 0; i < WARMUP; i++) {
+			run.run();
+		}
+		final double[] times = new double[RUNS];
+		for (int i = 0; i < RUNS; i++) {
+			final long start = System.nanoTime();
+			run.run();
+			times[i] = (System.nanoTime() - start) / 1e6;
+		}
+		Arrays.sort(times);
+		return times[RUNS / 2];
+	}
+}
@@ -57,12 +57,12 @@ import java.awt.Insets;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.List;
-import java.util.StringTokenizer;
 
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
 import javax.swing.DefaultListModel;
 import javax.swing.JButton;
+import javax.swing.JFileChooser;
 import javax.swing.JLabel;
 import javax.swing.JList;
 import javax.swing.JOptionPane;
@@ -70,6 +70,8 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.ListSelectionModel;
 import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
 import org.knime.core.data.DataTableSpec;
 import org.knime.core.node.InvalidSettingsException;
@@ -78,13 +80,17 @@ import org.knime.core.node.NodeLogger;
 import org.knime.core.node.NodeSettingsRO;
 import org.knime.core.node.NodeSettingsWO;
 import org.knime.core.node.NotConfigurableException;
+import org.knime.core.node.defaultnodesettings.DialogComponent;
 import org.knime.core.node.defaultnodesettings.DialogComponentBoolean;
+import org.knime.core.node.defaultnodesettings.DialogComponentFileChooser;
+import org.knime.core.node.defaultnodesettings.DialogComponentNumber;
 import org.knime.core.node.defaultnodesettings.DialogComponentNumberEdit;
 import org.knime.core.node.defaultnodesettings.DialogComponentPasswordField;
 import org.knime.core.node.defaultnodesettings.DialogComponentString;
 import org.knime.core.node.defaultnodesettings.DialogComponentStringSelection;
 import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
 import org.knime.core.node.defaultnodesettings.SettingsModelInteger;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
 import org.knime.knip.omero.insight.InsightGuiBridge;
 import org.knime.knip.omero.insight.InsightGuiListener;
@@ -142,6 +148,28 @@ public class OmeroReaderNodeDialog extends NodeDialogPane implements
 
 	private DialogComponentBoolean m_encryptedConnectionDC;
 
+	// LOADING OPTIONS
+	private final JPanel m_loadingPanel;
+
+	private DialogComponentNumber m_parallelPlaneRequestsDC;
+
+	private DialogComponentNumber m_prefetchedImagesDC;
+
+	private DialogComponentNumber m_memoryBudgetDC;
+
+	private DialogComponentNumber m_mappedStorageThresholdDC;
+
+	private DialogComponentString m_containerPathDC;
+
+	private DialogComponentBoolean m_planeCacheDC;
+
+	private DialogComponentFileChooser m_planeCacheDirDC;
+
+	private DialogComponentNumber m_planeCacheSizeDC;
+
+	// REGION
+	private DialogComponent[] m_regionDCs;
+
 	// GUI and IDs
 	private final JPanel m_mainPanel;
 
@@ -151,6 +179,8 @@ public class OmeroReaderNodeDialog extends NodeDialogPane implements
 
 	private DefaultListModel<Long> m_idListModel;
 
+	private JList<Long> m_idList;
+
 	/**
 	 * holds a reference to the class that controlls the OMEREO.insight viewer.
 	 * Might be null if no viewer is associated.
@@ -163,6 +193,7 @@ public class OmeroReaderNodeDialog extends NodeDialogPane implements
 	protected OmeroReaderNodeDialog() {
 		m_credentialsPanel = initCredentialsPanel();
 		m_mainPanel = initMainPanel();
+		m_loadingPanel = initLoadingPanel();
 
 		final JPanel tabPanel = new JPanel(new GridBagLayout());
 		final GridBagConstraints gbc = new GridBagConstraints();
@@ -176,7 +207,12 @@ public class OmeroReaderNodeDialog extends NodeDialogPane implements
 		gbc.weighty = 1.0;
 		tabPanel.add(m_mainPanel, gbc);
 
+		gbc.gridy++;
+		gbc.weighty = 0.0;
+		tabPanel.add(m_loadingPanel, gbc);
+
 		addTab("OMERO.insight", tabPanel);
+		addTab("Region", initRegionPanel());
 	}
 
 	@Override
@@ -187,6 +223,17 @@ public class OmeroReaderNodeDialog extends NodeDialogPane implements
 		m_speedDC.saveSettingsTo(settings);
 		m_userDC.saveSettingsTo(settings);
 		m_encryptedConnectionDC.saveSettingsTo(settings);
+		m_parallelPlaneRequestsDC.saveSettingsTo(settings);
+		m_prefetchedImagesDC.saveSettingsTo(settings);
+		m_memoryBudgetDC.saveSettingsTo(settings);
+		m_mappedStorageThresholdDC.saveSettingsTo(settings);
+		m_containerPathDC.saveSettingsTo(settings);
+		m_planeCacheDC.saveSettingsTo(settings);
+		m_planeCacheDirDC.saveSettingsTo(settings);
+		m_planeCacheSizeDC.saveSettingsTo(settings);
+		for (final DialogComponent dc : m_regionDCs) {
+			dc.saveSettingsTo(settings);
+		}
 
 		// encryption test
 		if (!isEncryptionOnline()) {
@@ -224,14 +271,11 @@ public class OmeroReaderNodeDialog extends NodeDialogPane implements
 
 		}
 
-		String listValue = "";
-		if (m_idListModel.size() > 0) {
-			for (int i = 0; i < (m_idListModel.size() - 1); i++) {
-				listValue += m_idListModel.elementAt(i) + ";";
-			}
-			listValue += m_idListModel.elementAt(m_idListModel.size() - 1);
+		final long[] ids = new long[m_idListModel.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = m_idListModel.elementAt(i);
 		}
-		settings.addString(OmeroReaderNodeModel.IMAGE_ID_KEY, listValue);
+		OmeroReaderNodeModel.saveImageIDs(settings, ids);
 
 	}
 
@@ -257,16 +301,35 @@ public class OmeroReaderNodeDialog extends NodeDialogPane implements
 		m_userDC.loadSettingsFrom(settings, specs);
 		m_pwDC.loadSettingsFrom(settings, specs);
 		m_encryptedConnectionDC.loadSettingsFrom(settings, specs);
+		m_parallelPlaneRequestsDC.loadSettingsFrom(settings, specs);
+		m_prefetchedImagesDC.loadSettingsFrom(settings, specs);
+		m_memoryBudgetDC.loadSettingsFrom(settings, specs);
+		m_mappedStorageThresholdDC.loadSettingsFrom(settings, specs);
+		m_containerPathDC.loadSettingsFrom(settings, specs);
+		m_planeCacheDC.loadSettingsFrom(settings, specs);
+		m_planeCacheDirDC.loadSettingsFrom(settings, specs);
+		m_planeCacheSizeDC.loadSettingsFrom(settings, specs);
+		for (final DialogComponent dc : m_regionDCs) {
+			dc.loadSettingsFrom(settings, specs);
+		}
 
-		m_idListModel.clear();
-
-		final String listValue = settings.getString(
-				OmeroReaderNodeModel.IMAGE_ID_KEY, "");
-		final StringTokenizer tk = new StringTokenizer(listValue, ";");
+		// an empty list would replace the stored IDs on OK
+		final long[] ids;
+		try {
+			ids = OmeroReaderNodeModel.parseImageIDs(settings.getString(
+					OmeroReaderNodeModel.IMAGE_ID_KEY, ""));
+		} catch (final InvalidSettingsException e) {
+			throw new NotConfigurableException(e.getMessage());
+		}
 
-		while (tk.hasMoreTokens()) {
-			m_idListModel.addElement(Long.parseLong(tk.nextToken()));
+		// fill a detached model, the list is notified once
+		final DefaultListModel<Long> idListModel = new DefaultListModel<>();
+		idListModel.ensureCapacity(ids.length);
+		for (final long id : ids) {
+			idListModel.addElement(id);
 		}
+		m_idListModel = idListModel;
+		m_idList.setModel(idListModel);
 	}
 
 	@Override
@@ -366,11 +429,11 @@ public class OmeroReaderNodeDialog extends NodeDialogPane implements
 			ret.add(listL, gbc);
 		}
 		m_idListModel = new DefaultListModel<>();
-		final JList<Long> list = new JList<>(m_idListModel);
-		list.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
-		list.setLayoutOrientation(JList.VERTICAL);
+		m_idList = new JList<>(m_idListModel);
+		m_idList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+		m_idList.setLayoutOrientation(JList.VERTICAL);
 
-		final JScrollPane listScroller = new JScrollPane(list);
+		final JScrollPane listScroller = new JScrollPane(m_idList);
 		listScroller.setMinimumSize(new Dimension(150, 100));
 		listScroller.setPreferredSize(new Dimension(150, 100));
 		{
@@ -405,7 +468,7 @@ public class OmeroReaderNodeDialog extends NodeDialogPane implements
 		removeSelectedB.addActionListener(new ActionListener() {
 			@Override
 			public void actionPerformed(final ActionEvent e) {
-			    list.getSelectedValuesList().forEach(value ->
+			    m_idList.getSelectedValuesList().forEach(value ->
 			        m_idListModel.removeElement(value));
 			}
 		});
@@ -427,10 +490,170 @@ public class OmeroReaderNodeDialog extends NodeDialogPane implements
 			gbc.anchor = GridBagConstraints.CENTER;
 			ret.add(m_messageL, gbc);
 		}
+		m_containerPathDC = new DialogComponentString(
+				OmeroReaderNodeModel.createContainerPathSM(),
+				"or load all images of (ome://host/dataset/ID):", false, 25);
+		{
+			gbc.gridy++;
+			ret.add(m_containerPathDC.getComponentPanel(), gbc);
+		}
 
 		return ret;
 	}
 
+	/**
+	 * @return a panel holding the options that control how images are loaded
+	 */
+	private JPanel initLoadingPanel() {
+		final JPanel ret = new JPanel(new GridBagLayout());
+		ret.setBorder(BorderFactory.createTitledBorder(
+				BorderFactory.createLineBorder(Color.gray, 1),
+				"Loading Options"));
+
+		final GridBagConstraints gbc = new GridBagConstraints();
+		gbc.insets = new Insets(5, 5, 5, 5);
+		gbc.anchor = GridBagConstraints.WEST;
+
+		m_parallelPlaneRequestsDC = new DialogComponentNumber(
+				OmeroReaderNodeModel.createParallelPlaneRequestsSM(),
+				"Concurrent plane requests:", 1);
+		{
+			gbc.gridx = 0;
+			gbc.gridy = 0;
+			ret.add(m_parallelPlaneRequestsDC.getComponentPanel(), gbc);
+		}
+
+		m_prefetchedImagesDC = new DialogComponentNumber(
+				OmeroReaderNodeModel.createPrefetchedImagesSM(),
+				"Images loaded ahead:", 1);
+		{
+			gbc.gridy++;
+			ret.add(m_prefetchedImagesDC.getComponentPanel(), gbc);
+		}
+
+		m_memoryBudgetDC = new DialogComponentNumber(
+				OmeroReaderNodeModel.createMemoryBudgetSM(),
+				"Memory for images loaded ahead (MB):", 256);
+		{
+			gbc.gridy++;
+			ret.add(m_memoryBudgetDC.getComponentPanel(), gbc);
+		}
+
+		m_mappedStorageThresholdDC = new DialogComponentNumber(
+				OmeroReaderNodeModel.createMappedStorageThresholdSM(),
+				"Memory-map images larger than (MB, 0 = never):", 1024);
+		{
+			gbc.gridy++;
+			ret.add(m_mappedStorageThresholdDC.getComponentPanel(), gbc);
+		}
+
+		final SettingsModelBoolean planeCacheSM = OmeroReaderNodeModel
+				.createPlaneCacheSM();
+		final SettingsModelString planeCacheDirSM = OmeroReaderNodeModel
+				.createPlaneCacheDirSM();
+		final SettingsModelIntegerBounded planeCacheSizeSM = OmeroReaderNodeModel
+				.createPlaneCacheSizeSM();
+		planeCacheSM.addChangeListener(new ChangeListener() {
+			@Override
+			public void stateChanged(final ChangeEvent e) {
+				planeCacheDirSM.setEnabled(planeCacheSM.getBooleanValue());
+				planeCacheSizeSM.setEnabled(planeCacheSM.getBooleanValue());
+			}
+		});
+		planeCacheDirSM.setEnabled(false);
+		planeCacheSizeSM.setEnabled(false);
+
+		m_planeCacheDC = new DialogComponentBoolean(planeCacheSM,
+				"Cache planes on disk");
+		{
+			gbc.gridy++;
+			ret.add(m_planeCacheDC.getComponentPanel(), gbc);
+		}
+
+		m_planeCacheDirDC = new DialogComponentFileChooser(planeCacheDirSM,
+				"omero-plane-cache", JFileChooser.OPEN_DIALOG, true);
+		m_planeCacheDirDC.setBorderTitle("Cache directory (empty = "
+				+ OmeroReaderNodeModel.getPlaneCacheDir("") + ")");
+		{
+			gbc.gridy++;
+			ret.add(m_planeCacheDirDC.getComponentPanel(), gbc);
+		}
+
+		m_planeCacheSizeDC = new DialogComponentNumber(planeCacheSizeSM,
+				"Cache size (MB):", 1024);
+		{
+			gbc.gridy++;
+			ret.add(m_planeCacheSizeDC.getComponentPanel(), gbc);
+		}
+
+		return ret;
+	}
+
+	/**
+	 * @return a panel holding the XY box and the Z, C and T ranges of the
+	 *         loaded part of each image
+	 */
+	private JPanel initRegionPanel() {
+		final JPanel ret = new JPanel(new GridBagLayout());
+		ret.setBorder(BorderFactory.createTitledBorder(
+				BorderFactory.createLineBorder(Color.gray, 1),
+				"Loaded Region"));
+
+		m_regionDCs = new DialogComponent[] {
+				new DialogComponentNumber(
+						OmeroReaderNodeModel
+								.createRegionSM(OmeroReaderNodeModel.REGION_X_KEY),
+						"X:", 256),
+				new DialogComponentNumber(
+						OmeroReaderNodeModel
+								.createRegionSM(OmeroReaderNodeModel.REGION_Y_KEY),
+						"Y:", 256),
+				new DialogComponentNumber(
+						OmeroReaderNodeModel
+								.createRegionSM(OmeroReaderNodeModel.REGION_WIDTH_KEY),
+						"Width (0 = to the border):", 256),
+				new DialogComponentNumber(
+						OmeroReaderNodeModel
+								.createRegionSM(OmeroReaderNodeModel.REGION_HEIGHT_KEY),
+						"Height (0 = to the border):", 256),
+				new DialogComponentString(
+						OmeroReaderNodeModel
+								.createRangeSM(OmeroReaderNodeModel.Z_RANGE_KEY),
+						"Z range:"),
+				new DialogComponentString(
+						OmeroReaderNodeModel
+								.createRangeSM(OmeroReaderNodeModel.C_RANGE_KEY),
+						"Channel range:"),
+				new DialogComponentString(
+						OmeroReaderNodeModel
+								.createRangeSM(OmeroReaderNodeModel.T_RANGE_KEY),
+						"Time range:"),
+				new DialogComponentNumber(
+						OmeroReaderNodeModel.createTargetEdgeLengthSM(),
+						"Downsample to edge length (0 = full resolution):",
+						256) };
+
+		final GridBagConstraints gbc = new GridBagConstraints();
+		gbc.insets = new Insets(5, 5, 5, 5);
+		gbc.anchor = GridBagConstraints.WEST;
+		gbc.gridx = 0;
+		gbc.gridy = 0;
+		for (final DialogComponent dc : m_regionDCs) {
+			ret.add(dc.getComponentPanel(), gbc);
+			gbc.gridy++;
+		}
+
+		final JLabel hint = new JLabel(
+				"Ranges are 0 based and written as first-last:step, empty selects all.");
+		{
+			ret.add(hint, gbc);
+		}
+
+		final JPanel tab = new JPanel(new BorderLayout());
+		tab.add(ret, BorderLayout.NORTH);
+		return tab;
+	}
+
 	/**
 	 * @return a panel holding input fields for the server, port, connection
 	 *         speed, user name and password
@@ -50,31 +50,48 @@ package org.knime.knip.omero;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.StringTokenizer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 import org.knime.core.data.DataColumnSpecCreator;
 import org.knime.core.data.DataTableSpec;
 import org.knime.core.data.RowKey;
 import org.knime.core.data.def.DefaultRow;
-import org.knime.core.node.BufferedDataContainer;
 import org.knime.core.node.BufferedDataTable;
 import org.knime.core.node.BufferedDataTableHolder;
 import org.knime.core.node.CanceledExecutionException;
 import org.knime.core.node.ExecutionContext;
 import org.knime.core.node.ExecutionMonitor;
 import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.KNIMEConstants;
 import org.knime.core.node.NodeLogger;
 import org.knime.core.node.NodeModel;
 import org.knime.core.node.NodeSettingsRO;
 import org.knime.core.node.NodeSettingsWO;
 import org.knime.core.node.defaultnodesettings.DialogComponentPasswordField;
+import org.knime.core.node.defaultnodesettings.SettingsModel;
 import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
 import org.knime.core.node.defaultnodesettings.SettingsModelInteger;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.port.PortType;
+import org.knime.core.node.streamable.BufferedDataTableRowOutput;
+import org.knime.core.node.streamable.OutputPortRole;
+import org.knime.core.node.streamable.PartitionInfo;
+import org.knime.core.node.streamable.PortInput;
+import org.knime.core.node.streamable.PortOutput;
+import org.knime.core.node.streamable.RowOutput;
+import org.knime.core.node.streamable.StreamableOperator;
 import org.knime.knip.base.data.img.ImgPlusCell;
 import org.knime.knip.base.data.img.ImgPlusCellFactory;
+import org.knime.knip.omero.insight.ContainerPath;
 import org.knime.knip.omero.insight.HeadlessImageLoader;
+import org.knime.knip.omero.insight.ImageLoadPipeline;
+import org.knime.knip.omero.insight.ImageMetadata;
+import org.knime.knip.omero.insight.ImageRegion;
+import org.knime.knip.omero.insight.IndexRange;
+import org.knime.knip.omero.insight.PlaneDiskCache;
 import org.openmicroscopy.shoola.env.data.login.UserCredentials;
 
 import net.imagej.ImgPlus;
@@ -102,6 +119,38 @@ public class OmeroReaderNodeModel extends NodeModel implements
 	 */
 	private final String[] SPEED = OmeroReaderNodeDialog.createSpeedArray();
 
+	static final String PARALLEL_PLANE_REQUESTS_KEY = "ParallelPlaneRequests";
+
+	static final String PREFETCHED_IMAGES_KEY = "PrefetchedImages";
+
+	static final String MEMORY_BUDGET_KEY = "InFlightMemoryMB";
+
+	static final String REGION_X_KEY = "RegionX";
+
+	static final String REGION_Y_KEY = "RegionY";
+
+	static final String REGION_WIDTH_KEY = "RegionWidth";
+
+	static final String REGION_HEIGHT_KEY = "RegionHeight";
+
+	static final String Z_RANGE_KEY = "ZRange";
+
+	static final String C_RANGE_KEY = "CRange";
+
+	static final String T_RANGE_KEY = "TRange";
+
+	static final String TARGET_EDGE_LENGTH_KEY = "TargetEdgeLength";
+
+	static final String PLANE_CACHE_KEY = "PlaneCache";
+
+	static final String PLANE_CACHE_DIR_KEY = "PlaneCacheDir";
+
+	static final String PLANE_CACHE_SIZE_KEY = "PlaneCacheSizeMB";
+
+	static final String MAPPED_STORAGE_THRESHOLD_KEY = "MappedStorageThresholdMB";
+
+	static final String CONTAINER_PATH_KEY = "ContainerPath";
+
 	// SETTINGS METHODS
 	static SettingsModelString createServerSM() {
 		return new SettingsModelString("OIserver", "");
@@ -130,6 +179,66 @@ public class OmeroReaderNodeModel extends NodeModel implements
 	    return new SettingsModelBoolean("Use encrypted connection", false);
 	}
 
+	static SettingsModelIntegerBounded createParallelPlaneRequestsSM() {
+		return new SettingsModelIntegerBounded(PARALLEL_PLANE_REQUESTS_KEY, 4,
+				1, 64);
+	}
+
+	static SettingsModelIntegerBounded createPrefetchedImagesSM() {
+		return new SettingsModelIntegerBounded(PREFETCHED_IMAGES_KEY, 2, 1, 32);
+	}
+
+	static SettingsModelIntegerBounded createMemoryBudgetSM() {
+		return new SettingsModelIntegerBounded(MEMORY_BUDGET_KEY, 1024, 16,
+				Integer.MAX_VALUE);
+	}
+
+	static SettingsModelIntegerBounded createRegionSM(final String key) {
+		return new SettingsModelIntegerBounded(key, 0, 0, Integer.MAX_VALUE);
+	}
+
+	static SettingsModelString createRangeSM(final String key) {
+		return new SettingsModelString(key, "");
+	}
+
+	static SettingsModelIntegerBounded createTargetEdgeLengthSM() {
+		return new SettingsModelIntegerBounded(TARGET_EDGE_LENGTH_KEY, 0, 0,
+				Integer.MAX_VALUE);
+	}
+
+	static SettingsModelString createContainerPathSM() {
+		return new SettingsModelString(CONTAINER_PATH_KEY, "");
+	}
+
+	static SettingsModelIntegerBounded createMappedStorageThresholdSM() {
+		return new SettingsModelIntegerBounded(MAPPED_STORAGE_THRESHOLD_KEY,
+				0, 0, Integer.MAX_VALUE);
+	}
+
+	static SettingsModelBoolean createPlaneCacheSM() {
+		return new SettingsModelBoolean(PLANE_CACHE_KEY, false);
+	}
+
+	static SettingsModelString createPlaneCacheDirSM() {
+		return new SettingsModelString(PLANE_CACHE_DIR_KEY, "");
+	}
+
+	static SettingsModelIntegerBounded createPlaneCacheSizeSM() {
+		return new SettingsModelIntegerBounded(PLANE_CACHE_SIZE_KEY, 4096, 16,
+				Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param dir
+	 *            the configured cache directory, empty for the default
+	 * @return the directory holding the cached planes
+	 */
+	static File getPlaneCacheDir(final String dir) {
+		return dir.trim().isEmpty() ? new File(
+				KNIMEConstants.getKNIMEHomeDir(), "omero-plane-cache")
+				: new File(dir.trim());
+	}
+
 	// SETTINGS
 	private final SettingsModelString m_serverSM = createServerSM();
 
@@ -143,10 +252,52 @@ public class OmeroReaderNodeModel extends NodeModel implements
 
 	private final SettingsModelBoolean m_encryptedConnectionSM = createEncryptedConnectionSM();
 
+	private final SettingsModelIntegerBounded m_parallelPlaneRequestsSM = createParallelPlaneRequestsSM();
+
+	private final SettingsModelIntegerBounded m_prefetchedImagesSM = createPrefetchedImagesSM();
+
+	private final SettingsModelIntegerBounded m_memoryBudgetSM = createMemoryBudgetSM();
+
+	private final SettingsModelIntegerBounded m_regionXSM = createRegionSM(REGION_X_KEY);
+
+	private final SettingsModelIntegerBounded m_regionYSM = createRegionSM(REGION_Y_KEY);
+
+	private final SettingsModelIntegerBounded m_regionWidthSM = createRegionSM(REGION_WIDTH_KEY);
+
+	private final SettingsModelIntegerBounded m_regionHeightSM = createRegionSM(REGION_HEIGHT_KEY);
+
+	private final SettingsModelString m_zRangeSM = createRangeSM(Z_RANGE_KEY);
+
+	private final SettingsModelString m_cRangeSM = createRangeSM(C_RANGE_KEY);
+
+	private final SettingsModelString m_tRangeSM = createRangeSM(T_RANGE_KEY);
+
+	private final SettingsModelIntegerBounded m_targetEdgeLengthSM = createTargetEdgeLengthSM();
+
+	private final SettingsModelIntegerBounded m_mappedStorageThresholdSM = createMappedStorageThresholdSM();
+
+	/** a project, dataset or image whose images are loaded instead of the IDs. */
+	private final SettingsModelString m_containerPathSM = createContainerPathSM();
+
+	private final SettingsModelBoolean m_planeCacheSM = createPlaneCacheSM();
+
+	private final SettingsModelString m_planeCacheDirSM = createPlaneCacheDirSM();
+
+	private final SettingsModelIntegerBounded m_planeCacheSizeSM = createPlaneCacheSizeSM();
+
+	/** the plane cache settings, loaded together. */
+	private final SettingsModel[] m_planeCacheSMs = { m_planeCacheSM,
+			m_planeCacheDirSM, m_planeCacheSizeSM };
+
+	/** the region settings, loaded together. */
+	private final SettingsModel[] m_regionSMs = { m_regionXSM, m_regionYSM,
+			m_regionWidthSM, m_regionHeightSM, m_zRangeSM, m_cRangeSM,
+			m_tRangeSM };
+
 	// SETTINGS VAR
 	static final String IMAGE_ID_KEY = "ImageIDs";
 
-	private Long[] m_pixelIDs;
+	private long[] m_pixelIDs;
 
 	/* data table for table cell view */
 	private BufferedDataTable m_data;
@@ -158,6 +309,19 @@ public class OmeroReaderNodeModel extends NodeModel implements
 		super(0, 1);
 	}
 
+	/**
+	 * Constructor for reader variants with different ports.
+	 *
+	 * @param inPortTypes
+	 *            the input port types
+	 * @param outPortTypes
+	 *            the output port types
+	 */
+	protected OmeroReaderNodeModel(final PortType[] inPortTypes,
+			final PortType[] outPortTypes) {
+		super(inPortTypes, outPortTypes);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 *
@@ -169,77 +333,256 @@ public class OmeroReaderNodeModel extends NodeModel implements
 	@Override
 	protected BufferedDataTable[] execute(final BufferedDataTable[] inData,
 			final ExecutionContext exec) throws Exception {
+		final BufferedDataTableRowOutput out = new BufferedDataTableRowOutput(
+				exec.createDataContainer(createOutSpec()));
+		loadImages(out, exec);
+		out.close();
 
-		final HeadlessImageLoader planeLoader = new HeadlessImageLoader(
-				getUserCredentials());
+		final BufferedDataTable[] data = new BufferedDataTable[] { out
+				.getDataTable() };
+		m_data = data[0];
+		return data;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public OutputPortRole[] getOutputPortRoles() {
+		return new OutputPortRole[] { OutputPortRole.NON_DISTRIBUTED };
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Pushes every image downstream as soon as it is loaded. The table is not
+	 * kept for the view.
+	 */
+	@Override
+	public StreamableOperator createStreamableOperator(
+			final PartitionInfo partitionInfo, final PortObjectSpec[] inSpecs)
+			throws InvalidSettingsException {
+		return new StreamableOperator() {
+			@Override
+			public void runFinal(final PortInput[] inputs,
+					final PortOutput[] outputs, final ExecutionContext exec)
+					throws Exception {
+				final RowOutput out = (RowOutput) outputs[0];
+				loadImages(out, exec);
+				out.close();
+			}
+		};
+	}
+
+	/**
+	 * loads the images selected in the settings and pushes a row for every
+	 * image as soon as it is loaded. Images that cannot be loaded are logged
+	 * and skipped.
+	 *
+	 * @param out
+	 *            receives the image rows, not closed by this method
+	 * @param exec
+	 *            for progress and cancellation
+	 * @throws Exception
+	 *             if the connection fails or the execution is canceled
+	 */
+	protected void loadImages(final RowOutput out, final ExecutionContext exec)
+			throws Exception {
+		final HeadlessImageLoader planeLoader = createImageLoader();
 		final ImgPlusCellFactory cellFactory = new ImgPlusCellFactory(exec);
-		final BufferedDataContainer con = exec
-				.createDataContainer(createOutSpec());
 
 		exec.setMessage("Connecting");
 
 		planeLoader.connect();
-		{
-			Long[] imageIDs = planeLoader.getImageIDs(m_pixelIDs);
+		try (ImageLoadPipeline pipeline = createPipeline(planeLoader)) {
+			final long[] pixelIDs;
+			final String container = m_containerPathSM.getStringValue().trim();
+			if (container.isEmpty()) {
+				pixelIDs = m_pixelIDs;
+			} else {
+				exec.setMessage("Listing the images of " + container);
+				final ContainerPath path = ContainerPath.parse(container);
+				if ((path.getHost() != null)
+						&& !path.getHost().equalsIgnoreCase(
+								m_serverSM.getStringValue())) {
+					LOGGER.warn("the path " + container
+							+ " is read from the configured server "
+							+ m_serverSM.getStringValue());
+				}
+				pixelIDs = planeLoader.resolveContainer(path);
+				LOGGER.info(container + " holds " + pixelIDs.length
+						+ " images");
+			}
 
-			final double rowPercent = m_pixelIDs.length / 100.0;
-			final int totalRows = m_pixelIDs.length;
+			exec.setMessage("Resolving image metadata");
+			final ImageMetadata meta = planeLoader.prefetchMetadata(pixelIDs);
+
+			final double rowPercent = pixelIDs.length / 100.0;
+			final int totalRows = pixelIDs.length;
 			int currentRow = 0;
 			int successfullLoaded = 0;
+			int nextSubmit = 0;
+
+			while (currentRow < totalRows) {
+				// keep the following images loading in the background
+				while (nextSubmit < totalRows) {
+					final long pixelID = pixelIDs[nextSubmit];
+					final boolean resolved = meta.contains(pixelID);
+					final long bytes = getHeapBytes(meta, pixelID);
+					if (!pipeline.canSubmit(bytes)) {
+						break;
+					}
+					// unresolved pixel IDs fail in the loader and are logged
+					pipeline.submit(resolved ? meta.getImageID(pixelID) : -1,
+							pixelID, bytes);
+					nextSubmit++;
+				}
 
-			for (int i = 0; i < m_pixelIDs.length; i++) {
-				long pixelID = m_pixelIDs[i];
-				long imageID = imageIDs[i];
-
-				exec.checkCanceled();
-				// status message
-				if (successfullLoaded == currentRow) {
-					exec.setProgress(rowPercent * currentRow, "Reading image "
-							+ (currentRow + 1) + "/" + totalRows);
-				} else {
-					exec.setProgress(rowPercent * currentRow, "Reading image "
-							+ (currentRow + 1) + "/" + totalRows + " ("
-							+ (currentRow - successfullLoaded) + " failed)");
+				ImageLoadPipeline.Result result = null;
+				while (result == null) {
+					exec.checkCanceled();
+					// status message
+					final String throughput = String.format(
+							" (%.1f planes/s)",
+							planeLoader.getPlanesPerSecond());
+					if (successfullLoaded == currentRow) {
+						exec.setProgress(rowPercent * currentRow,
+								"Reading image " + (currentRow + 1) + "/"
+										+ totalRows + throughput);
+					} else {
+						exec.setProgress(rowPercent * currentRow,
+								"Reading image " + (currentRow + 1) + "/"
+										+ totalRows + " ("
+										+ (currentRow - successfullLoaded)
+										+ " failed)" + throughput);
+					}
+					result = pipeline.poll(100, TimeUnit.MILLISECONDS);
 				}
 
-				// image loading and error handling
+				// error handling
+				final long pixelID = result.getPixelID();
+				final long imageID = result.getImageID();
 				@SuppressWarnings("rawtypes")
-				ImgPlus<RealType> img = null;
-				try {
-					img = planeLoader.getImage(imageID, pixelID);
-				} catch (final Exception e) {
+				final ImgPlus<RealType> img = result.getImage();
+				if (result.getFailure() != null) {
 					LOGGER.error("could not load image " + imageID + " / "
 							+ pixelID);
 					LOGGER.warn("Loading image  " + imageID + " / " + pixelID
 							+ " caused the following exception: \n"
-							+ e.getMessage());
+							+ result.getFailure().getMessage());
 				}
 
 				if (img != null) {
-					con.addRowToTable(new DefaultRow(new RowKey("omero_id_"
-							+ pixelID), cellFactory.createCell(img)));
+					out.push(new DefaultRow(new RowKey("omero_id_" + pixelID),
+							cellFactory.createCell(img)));
 					successfullLoaded++;
 				}
 
 				// next image
 				currentRow++;
 			}
+			LOGGER.info(String.format("loaded %d planes at %.1f planes/s",
+					planeLoader.getPlanesLoaded(),
+					planeLoader.getPlanesPerSecond()));
+		} finally {
+			planeLoader.disconnect();
 		}
-		planeLoader.disconnect();
-		con.close();
+	}
 
-		LOGGER.getLevel();
+	/**
+	 * @return size in bytes above which images are memory-mapped, 0 if
+	 *         images are always held on the heap
+	 */
+	private long getMappedStorageThreshold() {
+		return m_mappedStorageThresholdSM.getIntValue() * 1024L * 1024L;
+	}
 
-		final BufferedDataTable[] data = new BufferedDataTable[] { con
-				.getTable() };
-		m_data = data[0];
-		return data;
+	/**
+	 * @param meta
+	 *            the prefetched metadata
+	 * @param pixelID
+	 *            the OMERO pixel ID
+	 * @return the estimated heap needed to hold the loaded image, 0 if
+	 *         unknown. Memory-mapped images need at most the mapping
+	 *         threshold while they are assembled.
+	 */
+	protected long getHeapBytes(final ImageMetadata meta, final long pixelID) {
+		if (!meta.contains(pixelID)) {
+			return 0;
+		}
+		final long bytes = meta.getSizeInBytes(pixelID);
+		final long threshold = getMappedStorageThreshold();
+		return threshold > 0 ? Math.min(bytes, threshold) : bytes;
+	}
+
+	/**
+	 * @return a loader for the configured server, not yet connected
+	 */
+	protected HeadlessImageLoader createImageLoader() {
+		final HeadlessImageLoader loader = new HeadlessImageLoader(
+				getUserCredentials());
+		loader.setParallelPlaneRequests(m_parallelPlaneRequestsSM
+				.getIntValue());
+		try {
+			loader.setRegion(new ImageRegion(m_regionXSM.getIntValue(),
+					m_regionYSM.getIntValue(), m_regionWidthSM.getIntValue(),
+					m_regionHeightSM.getIntValue(),
+					parseRange(m_zRangeSM.getStringValue()),
+					parseRange(m_cRangeSM.getStringValue()),
+					parseRange(m_tRangeSM.getStringValue())));
+		} catch (final InvalidSettingsException e) {
+			// validated on load
+			throw new IllegalStateException(e);
+		}
+		loader.setTargetEdgeLength(m_targetEdgeLengthSM.getIntValue());
+		loader.setMappedStorageThreshold(getMappedStorageThreshold());
+		if (m_planeCacheSM.getBooleanValue()) {
+			final File dir = getPlaneCacheDir(m_planeCacheDirSM
+					.getStringValue());
+			try {
+				loader.setPlaneCache(PlaneDiskCache.getInstance(dir.toPath(),
+						m_planeCacheSizeSM.getIntValue() * 1024L * 1024L));
+			} catch (final IOException e) {
+				LOGGER.warn("Plane cache in " + dir
+						+ " is not available, loading all planes from OMERO: "
+						+ e.getMessage(), e);
+			}
+		}
+		return loader;
+	}
+
+	/**
+	 * @param text
+	 *            a Z, C or T range from the settings
+	 * @return the parsed range
+	 * @throws InvalidSettingsException
+	 *             if the range is malformed
+	 */
+	private static IndexRange parseRange(final String text)
+			throws InvalidSettingsException {
+		try {
+			return IndexRange.parse(text);
+		} catch (final IllegalArgumentException e) {
+			throw new InvalidSettingsException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * @param loader
+	 *            a connected loader
+	 * @return a pipeline that loads the configured number of images ahead,
+	 *         limited by the configured memory budget
+	 */
+	protected ImageLoadPipeline createPipeline(final HeadlessImageLoader loader) {
+		return new ImageLoadPipeline(loader,
+				m_prefetchedImagesSM.getIntValue(),
+				m_memoryBudgetSM.getIntValue() * 1024L * 1024L);
 	}
 
 	/**
 	 * @return an outputspec containing a single image column.
 	 */
-	private DataTableSpec createOutSpec() {
+	protected DataTableSpec createOutSpec() {
 		final DataColumnSpecCreator creator = new DataColumnSpecCreator(
 				"Image", ImgPlusCell.TYPE);
 		return new DataTableSpec(creator.createSpec());
@@ -274,7 +617,8 @@ public class OmeroReaderNodeModel extends NodeModel implements
 		}
 
 		// id s
-		if ((m_pixelIDs == null) || (m_pixelIDs.length == 0)) {
+		if (((m_pixelIDs == null) || (m_pixelIDs.length == 0))
+				&& m_containerPathSM.getStringValue().trim().isEmpty()) {
 			LOGGER.warn("please select some image ids");
 		}
 
@@ -296,15 +640,20 @@ public class OmeroReaderNodeModel extends NodeModel implements
         } catch (Exception e){
 
         }
-
-		String listValue = "";
-		if ((m_pixelIDs != null) && (m_pixelIDs.length > 0)) {
-			for (int i = 0; i < (m_pixelIDs.length - 1); i++) {
-				listValue += m_pixelIDs[i] + ";";
-			}
-			listValue += m_pixelIDs[m_pixelIDs.length - 1];
+		m_parallelPlaneRequestsSM.saveSettingsTo(settings);
+		m_prefetchedImagesSM.saveSettingsTo(settings);
+		m_memoryBudgetSM.saveSettingsTo(settings);
+		m_mappedStorageThresholdSM.saveSettingsTo(settings);
+		m_containerPathSM.saveSettingsTo(settings);
+		for (final SettingsModel sm : m_regionSMs) {
+			sm.saveSettingsTo(settings);
 		}
-		settings.addString(IMAGE_ID_KEY, listValue);
+		m_targetEdgeLengthSM.saveSettingsTo(settings);
+		for (final SettingsModel sm : m_planeCacheSMs) {
+			sm.saveSettingsTo(settings);
+		}
+
+		saveImageIDs(settings, m_pixelIDs == null ? new long[0] : m_pixelIDs);
 	}
 
 	/**
@@ -324,16 +673,48 @@ public class OmeroReaderNodeModel extends NodeModel implements
 		} catch (InvalidSettingsException e){
 		    // backwards compatibility
 		}
-
-		final String listValue = settings.getString(
-				OmeroReaderNodeModel.IMAGE_ID_KEY, "");
-		final StringTokenizer tk = new StringTokenizer(listValue, ";");
-		final ArrayList<Long> ids = new ArrayList<>();
-
-		while (tk.hasMoreTokens()) {
-			ids.add(Long.valueOf(tk.nextToken()));
+		try {
+			m_parallelPlaneRequestsSM.loadSettingsFrom(settings);
+		} catch (final InvalidSettingsException e) {
+			// backwards compatibility, keep the default
+		}
+		try {
+			m_prefetchedImagesSM.loadSettingsFrom(settings);
+		} catch (final InvalidSettingsException e) {
+			// backwards compatibility, keep the default
+		}
+		try {
+			m_memoryBudgetSM.loadSettingsFrom(settings);
+		} catch (final InvalidSettingsException e) {
+			// backwards compatibility, keep the default
+		}
+		if (settings.containsKey(REGION_X_KEY)) {
+			for (final SettingsModel sm : m_regionSMs) {
+				sm.loadSettingsFrom(settings);
+			}
+		}
+		try {
+			m_mappedStorageThresholdSM.loadSettingsFrom(settings);
+		} catch (final InvalidSettingsException e) {
+			// backwards compatibility, keep the default
+		}
+		try {
+			m_containerPathSM.loadSettingsFrom(settings);
+		} catch (final InvalidSettingsException e) {
+			// backwards compatibility, keep the default
+		}
+		try {
+			m_targetEdgeLengthSM.loadSettingsFrom(settings);
+		} catch (final InvalidSettingsException e) {
+			// backwards compatibility, keep the default
+		}
+		if (settings.containsKey(PLANE_CACHE_KEY)) {
+			for (final SettingsModel sm : m_planeCacheSMs) {
+				sm.loadSettingsFrom(settings);
+			}
 		}
-		m_pixelIDs = ids.toArray(new Long[] {});
+
+		m_pixelIDs = parseImageIDs(settings.getString(IMAGE_ID_KEY, ""));
 	}
 
 	/**
@@ -353,15 +734,159 @@ public class OmeroReaderNodeModel extends NodeModel implements
 		} catch (InvalidSettingsException e){
 		    // backwards compatibility
 		}
+		if (settings.containsKey(PARALLEL_PLANE_REQUESTS_KEY)) {
+			m_parallelPlaneRequestsSM.validateSettings(settings);
+		}
+		if (settings.containsKey(PREFETCHED_IMAGES_KEY)) {
+			m_prefetchedImagesSM.validateSettings(settings);
+		}
+		if (settings.containsKey(MEMORY_BUDGET_KEY)) {
+			m_memoryBudgetSM.validateSettings(settings);
+		}
+		if (settings.containsKey(REGION_X_KEY)) {
+			for (final SettingsModel sm : m_regionSMs) {
+				sm.validateSettings(settings);
+			}
+			for (final String key : new String[] { Z_RANGE_KEY, C_RANGE_KEY,
+					T_RANGE_KEY }) {
+				parseRange(settings.getString(key));
+			}
+		}
+		if (settings.containsKey(MAPPED_STORAGE_THRESHOLD_KEY)) {
+			m_mappedStorageThresholdSM.validateSettings(settings);
+		}
+		final String container = settings.getString(CONTAINER_PATH_KEY, "")
+				.trim();
+		if (!container.isEmpty()) {
+			try {
+				ContainerPath.parse(container);
+			} catch (final IllegalArgumentException e) {
+				throw new InvalidSettingsException(e.getMessage(), e);
+			}
+		}
+		if (settings.containsKey(TARGET_EDGE_LENGTH_KEY)) {
+			m_targetEdgeLengthSM.validateSettings(settings);
+		}
+		if (settings.containsKey(PLANE_CACHE_KEY)) {
+			for (final SettingsModel sm : m_planeCacheSMs) {
+				sm.validateSettings(settings);
+			}
+		}
 
-		final String listValue = settings.getString(
-				OmeroReaderNodeModel.IMAGE_ID_KEY, "");
-		final StringTokenizer tk = new StringTokenizer(listValue, ";");
-		final ArrayList<Long> ids = new ArrayList<>();
+		checkImageIDs(settings.getString(IMAGE_ID_KEY, ""));
+	}
 
-		while (tk.hasMoreTokens()) {
-			ids.add(Long.valueOf(tk.nextToken()));
+	/**
+	 * stores the pixel IDs as a ';' separated list under
+	 * {@link #IMAGE_ID_KEY}, the format used by all versions of this node.
+	 *
+	 * @param settings
+	 *            the settings to write to
+	 * @param ids
+	 *            the OMERO pixel IDs
+	 */
+	static void saveImageIDs(final NodeSettingsWO settings, final long[] ids) {
+		final StringBuilder listValue = new StringBuilder(ids.length * 8);
+		for (int i = 0; i < ids.length; i++) {
+			if (i > 0) {
+				listValue.append(';');
+			}
+			listValue.append(ids[i]);
 		}
+		settings.addString(IMAGE_ID_KEY, listValue.toString());
+	}
+
+	/**
+	 * checks that every entry of a ';' separated list of pixel IDs is a
+	 * number without parsing the whole list into an array.
+	 *
+	 * @param listValue
+	 *            the list as stored under {@link #IMAGE_ID_KEY}
+	 * @throws InvalidSettingsException
+	 *             if an entry is not a number
+	 */
+	static void checkImageIDs(final String listValue)
+			throws InvalidSettingsException {
+		int start = 0;
+		final int length = listValue.length();
+		for (int i = 0; i <= length; i++) {
+			if ((i < length) && (listValue.charAt(i) != ';')) {
+				continue;
+			}
+			if (!isLong(listValue, start, i)) {
+				throw new InvalidSettingsException("invalid image id: "
+						+ listValue.substring(start, i));
+			}
+			start = i + 1;
+		}
+	}
+
+	/**
+	 * @return true if the characters from start (inclusive) to end
+	 *         (exclusive) are empty or a number that fits a long
+	 */
+	private static boolean isLong(final String value, final int start,
+			final int end) {
+		int first = start;
+		if ((first < end) && ((value.charAt(first) == '-')
+				|| (value.charAt(first) == '+'))) {
+			first++;
+			if (first == end) {
+				return false;
+			}
+		}
+		for (int i = first; i < end; i++) {
+			if (!Character.isDigit(value.charAt(i))) {
+				return false;
+			}
+		}
+		if (end - first < 18) {
+			return true;
+		}
+		// may overflow
+		try {
+			Long.parseLong(value.substring(start, end));
+			return true;
+		} catch (final NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * parses a ';' separated list of pixel IDs in a single pass. Empty
+	 * entries are skipped.
+	 *
+	 * @param listValue
+	 *            the list as stored under {@link #IMAGE_ID_KEY}
+	 * @return the OMERO pixel IDs in list order
+	 * @throws InvalidSettingsException
+	 *             if an entry is not a number
+	 */
+	static long[] parseImageIDs(final String listValue)
+			throws InvalidSettingsException {
+		long[] ids = new long[16];
+		int count = 0;
+		int start = 0;
+		final int length = listValue.length();
+		for (int i = 0; i <= length; i++) {
+			if ((i < length) && (listValue.charAt(i) != ';')) {
+				continue;
+			}
+			if (i > start) {
+				if (count == ids.length) {
+					ids = Arrays.copyOf(ids, count * 2);
+				}
+				try {
+					ids[count++] = Long.parseLong(listValue.substring(start,
+							i));
+				} catch (final NumberFormatException e) {
+					throw new InvalidSettingsException("invalid image id: "
+							+ listValue.substring(start, i), e);
+				}
+			}
+			start = i + 1;
+		}
+		return Arrays.copyOf(ids, count);
 	}
 
 	/**
@@ -382,12 +907,20 @@ public class OmeroReaderNodeModel extends NodeModel implements
 			CanceledExecutionException {
 	}
 
+	/**
+	 * @return the project, dataset or image whose images are loaded instead
+	 *         of the IDs, empty if none is set
+	 */
+	protected String getContainerPath() {
+		return m_containerPathSM.getStringValue().trim();
+	}
+
 	/**
 	 * @return UserCredentials build from the settings models. The
 	 *         UserCredentials contain the decrypted clear text password => they
 	 *         should never be saved or stored!
 	 */
-	private UserCredentials getUserCredentials() {
+	protected UserCredentials getUserCredentials() {
 		final String server = m_serverSM.getStringValue();
 		final Integer port = m_portSM.getIntValue();
 		final String speedStr = m_speedSM.getStringValue();
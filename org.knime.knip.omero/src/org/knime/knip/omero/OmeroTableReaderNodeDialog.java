@@ -0,0 +1,122 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.omero;
+
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+
+import javax.swing.JPanel;
+
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.LongValue;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeSettingsRO;
+import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.NotConfigurableException;
+import org.knime.core.node.defaultnodesettings.DialogComponentButtonGroup;
+import org.knime.core.node.defaultnodesettings.DialogComponentColumnNameSelection;
+
+/**
+ * dialog of the OMERO Table Reader. Adds the selection of the ID column to
+ * the {@link OmeroReaderNodeDialog}, whose ID list is used if no input table
+ * is connected.
+ */
+public class OmeroTableReaderNodeDialog extends OmeroReaderNodeDialog {
+
+	private final DialogComponentColumnNameSelection m_idColumnDC;
+
+	private final DialogComponentButtonGroup m_idTypeDC;
+
+	/**
+	 * New pane for configuring the OMERO Table Reader node.
+	 */
+	@SuppressWarnings("unchecked")
+	protected OmeroTableReaderNodeDialog() {
+		m_idColumnDC = new DialogComponentColumnNameSelection(
+				OmeroTableReaderNodeModel.createIDColumnSM(), "ID column:", 0,
+				false, LongValue.class);
+		m_idTypeDC = new DialogComponentButtonGroup(
+				OmeroTableReaderNodeModel.createIDTypeSM(), false,
+				"The column contains",
+				OmeroTableReaderNodeModel.PIXEL_ID,
+				OmeroTableReaderNodeModel.IMAGE_ID);
+
+		final JPanel tabPanel = new JPanel(new GridBagLayout());
+		final GridBagConstraints gbc = new GridBagConstraints();
+		gbc.insets = new Insets(5, 5, 5, 5);
+		gbc.anchor = GridBagConstraints.NORTHWEST;
+		gbc.gridx = 0;
+		gbc.gridy = 0;
+		tabPanel.add(m_idColumnDC.getComponentPanel(), gbc);
+
+		gbc.gridy++;
+		gbc.weightx = 1.0;
+		gbc.weighty = 1.0;
+		tabPanel.add(m_idTypeDC.getComponentPanel(), gbc);
+
+		addTab("Input Table", tabPanel);
+	}
+
+	@Override
+	protected void saveSettingsTo(final NodeSettingsWO settings)
+			throws InvalidSettingsException {
+		super.saveSettingsTo(settings);
+		m_idColumnDC.saveSettingsTo(settings);
+		m_idTypeDC.saveSettingsTo(settings);
+	}
+
+	@Override
+	protected void loadSettingsFrom(final NodeSettingsRO settings,
+			final DataTableSpec[] specs) throws NotConfigurableException {
+		super.loadSettingsFrom(settings, specs);
+		m_idColumnDC.loadSettingsFrom(settings, specs);
+		m_idTypeDC.loadSettingsFrom(settings, specs);
+	}
+}
@@ -0,0 +1,471 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.omero;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.LongValue;
+import org.knime.core.data.RowKey;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.node.BufferedDataContainer;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeLogger;
+import org.knime.core.node.NodeSettingsRO;
+import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.port.PortType;
+import org.knime.core.node.streamable.BufferedDataTableRowOutput;
+import org.knime.core.node.streamable.DataTableRowInput;
+import org.knime.core.node.streamable.InputPortRole;
+import org.knime.core.node.streamable.OutputPortRole;
+import org.knime.core.node.streamable.PartitionInfo;
+import org.knime.core.node.streamable.PortInput;
+import org.knime.core.node.streamable.PortOutput;
+import org.knime.core.node.streamable.RowInput;
+import org.knime.core.node.streamable.RowOutput;
+import org.knime.core.node.streamable.StreamableOperator;
+import org.knime.knip.base.data.img.ImgPlusCellFactory;
+import org.knime.knip.omero.insight.HeadlessImageLoader;
+import org.knime.knip.omero.insight.ImageLoadPipeline;
+import org.knime.knip.omero.insight.ImageMetadata;
+
+import net.imagej.ImgPlus;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * This is the model implementation of the OMERO Table Reader. It reads the
+ * pixel or image IDs of the images that should be loaded from a column of the
+ * optional input table. The rows are processed in batches, so the ID table is
+ * never held in memory or in the settings, and the node can be executed in
+ * streaming mode. Without an input table the IDs selected in OMERO.insight are
+ * loaded like in the {@link OmeroReaderNodeModel}.
+ */
+public class OmeroTableReaderNodeModel extends OmeroReaderNodeModel {
+
+	private static final NodeLogger LOGGER = NodeLogger
+			.getLogger(OmeroTableReaderNodeModel.class);
+
+	/** the ID column contains OMERO pixel IDs. */
+	static final String PIXEL_ID = "Pixel ID";
+
+	/** the ID column contains OMERO image IDs. */
+	static final String IMAGE_ID = "Image ID";
+
+	/** number of rows whose metadata is resolved together. */
+	private static final int BATCH_SIZE = 1000;
+
+	static SettingsModelString createIDColumnSM() {
+		return new SettingsModelString("IDColumn", "");
+	}
+
+	static SettingsModelString createIDTypeSM() {
+		return new SettingsModelString("IDType", PIXEL_ID);
+	}
+
+	private final SettingsModelString m_idColumnSM = createIDColumnSM();
+
+	private final SettingsModelString m_idTypeSM = createIDTypeSM();
+
+	/**
+	 * Constructor for the node model.
+	 */
+	protected OmeroTableReaderNodeModel() {
+		super(new PortType[] { BufferedDataTable.TYPE_OPTIONAL },
+				new PortType[] { BufferedDataTable.TYPE });
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected DataTableSpec[] configure(final DataTableSpec[] inSpecs)
+			throws InvalidSettingsException {
+		if (inSpecs[0] == null) {
+			return super.configure(inSpecs);
+		}
+		getIDColumnIndex(inSpecs[0]);
+		if (!getContainerPath().isEmpty()) {
+			setWarningMessage("The IDs of the input table are loaded, the "
+					+ "container " + getContainerPath() + " is ignored");
+		}
+		return new DataTableSpec[] { createOutSpec() };
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected BufferedDataTable[] execute(final BufferedDataTable[] inData,
+			final ExecutionContext exec) throws Exception {
+		if (inData[0] == null) {
+			return super.execute(inData, exec);
+		}
+
+		final BufferedDataContainer con = exec
+				.createDataContainer(createOutSpec());
+		final BufferedDataTableRowOutput out = new BufferedDataTableRowOutput(
+				con);
+		loadRows(new DataTableRowInput(inData[0]), out, exec, inData[0]
+				.size());
+		out.close();
+
+		final BufferedDataTable[] data = new BufferedDataTable[] { out
+				.getDataTable() };
+		setInternalTables(data);
+		return data;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public InputPortRole[] getInputPortRoles() {
+		return new InputPortRole[] { InputPortRole.NONDISTRIBUTED_STREAMABLE };
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public OutputPortRole[] getOutputPortRoles() {
+		return new OutputPortRole[] { OutputPortRole.NON_DISTRIBUTED };
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public StreamableOperator createStreamableOperator(
+			final PartitionInfo partitionInfo, final PortObjectSpec[] inSpecs)
+			throws InvalidSettingsException {
+		return new StreamableOperator() {
+			@Override
+			public void runFinal(final PortInput[] inputs,
+					final PortOutput[] outputs, final ExecutionContext exec)
+					throws Exception {
+				final RowOutput out = (RowOutput) outputs[0];
+				if (inputs[0] == null) {
+					// no ID table, load the IDs from the settings
+					loadImages(out, exec);
+				} else {
+					loadRows((RowInput) inputs[0], out, exec, -1);
+				}
+				out.close();
+			}
+		};
+	}
+
+	/**
+	 * loads the images of the IDs in the input rows and pushes one row per
+	 * loaded image, keyed like its input row. Rows are read in batches of
+	 * {@link #BATCH_SIZE}, whose metadata is resolved in one step while the
+	 * images are loaded in a pipeline. The next batch is resolved as soon as
+	 * the current one is submitted, so the pipeline keeps running across
+	 * batches. Rows without ID and images that cannot be loaded are logged
+	 * and skipped.
+	 *
+	 * @param in
+	 *            the rows holding the IDs
+	 * @param out
+	 *            receives the image rows, not closed by this method
+	 * @param exec
+	 *            for progress and cancellation
+	 * @param rowCount
+	 *            number of input rows or -1 if unknown
+	 */
+	private void loadRows(final RowInput in, final RowOutput out,
+			final ExecutionContext exec, final long rowCount)
+			throws Exception {
+		final int idColumn = getIDColumnIndex(in.getDataTableSpec());
+		final boolean imageIDs = IMAGE_ID.equals(m_idTypeSM.getStringValue());
+		final ImgPlusCellFactory cellFactory = new ImgPlusCellFactory(exec);
+
+		final HeadlessImageLoader planeLoader = createImageLoader();
+		exec.setMessage("Connecting");
+		planeLoader.connect();
+		try (ImageLoadPipeline pipeline = createPipeline(planeLoader)) {
+			// keys of the submitted images in submission order
+			final Deque<RowKey> inFlight = new ArrayDeque<>();
+			Batch batch = readBatch(in, idColumn, imageIDs, planeLoader);
+			long currentRow = batch.m_skipped;
+			long failed = batch.m_skipped;
+			while (true) {
+				// submit as far as the pipeline allows
+				while (batch != null) {
+					if (batch.m_next == batch.m_size) {
+						// resolve the next batch while this one is loading
+						batch = batch.m_last ? null : readBatch(in, idColumn,
+								imageIDs, planeLoader);
+						if (batch != null) {
+							currentRow += batch.m_skipped;
+							failed += batch.m_skipped;
+						}
+						continue;
+					}
+					final int i = batch.m_next;
+					final long bytes = getHeapBytes(batch.m_meta,
+							batch.m_pixelIDs[i]);
+					if (!pipeline.canSubmit(bytes)) {
+						break;
+					}
+					pipeline.submit(batch.m_imgIDs[i], batch.m_pixelIDs[i],
+							bytes);
+					inFlight.add(batch.m_keys[i]);
+					batch.m_next++;
+				}
+				if (inFlight.isEmpty()) {
+					break;
+				}
+
+				ImageLoadPipeline.Result result = null;
+				while (result == null) {
+					exec.checkCanceled();
+					final String progress = "Reading image "
+							+ (currentRow + 1)
+							+ (rowCount < 0 ? "" : "/" + rowCount)
+							+ (failed == 0 ? "" : " (" + failed + " failed)")
+							+ String.format(" (%.1f planes/s)",
+									planeLoader.getPlanesPerSecond());
+					if (rowCount > 0) {
+						exec.setProgress((double) currentRow / rowCount,
+								progress);
+					} else {
+						exec.setMessage(progress);
+					}
+					result = pipeline.poll(100, TimeUnit.MILLISECONDS);
+				}
+
+				@SuppressWarnings("rawtypes")
+				final ImgPlus<RealType> img = result.getImage();
+				if (result.getFailure() != null) {
+					LOGGER.error("could not load image "
+							+ result.getImageID() + " / "
+							+ result.getPixelID());
+					LOGGER.warn("Loading image  " + result.getImageID()
+							+ " / " + result.getPixelID()
+							+ " caused the following exception: \n"
+							+ result.getFailure().getMessage());
+				}
+				final RowKey key = inFlight.poll();
+				if (img != null) {
+					out.push(new DefaultRow(key, cellFactory.createCell(img)));
+				} else {
+					failed++;
+				}
+				currentRow++;
+			}
+			LOGGER.info(String.format("loaded %d planes at %.1f planes/s",
+					planeLoader.getPlanesLoaded(),
+					planeLoader.getPlanesPerSecond()));
+		} finally {
+			planeLoader.disconnect();
+		}
+	}
+
+	/**
+	 * reads the next {@link #BATCH_SIZE} IDs and resolves their metadata.
+	 * Rows without ID are logged and skipped.
+	 *
+	 * @param in
+	 *            the rows holding the IDs
+	 * @param idColumn
+	 *            index of the ID column
+	 * @param imageIDs
+	 *            true if the column holds image IDs, false for pixel IDs
+	 * @param planeLoader
+	 *            the connected loader
+	 * @return the resolved batch, may be empty
+	 */
+	private static Batch readBatch(final RowInput in, final int idColumn,
+			final boolean imageIDs, final HeadlessImageLoader planeLoader)
+			throws Exception {
+		final Batch batch = new Batch();
+		final long[] ids = new long[BATCH_SIZE];
+		while (batch.m_size < BATCH_SIZE) {
+			final DataRow row = in.poll();
+			if (row == null) {
+				batch.m_last = true;
+				break;
+			}
+			final DataCell cell = row.getCell(idColumn);
+			if (cell.isMissing()) {
+				LOGGER.warn("row " + row.getKey() + " has no id, skipping it");
+				batch.m_skipped++;
+				continue;
+			}
+			batch.m_keys[batch.m_size] = row.getKey();
+			ids[batch.m_size] = ((LongValue) cell).getLongValue();
+			batch.m_size++;
+		}
+		if (batch.m_size == 0) {
+			return batch;
+		}
+
+		final long[] batchIDs = Arrays.copyOf(ids, batch.m_size);
+		final ImageMetadata meta = imageIDs ? planeLoader
+				.prefetchImageMetadata(batchIDs) : planeLoader
+				.prefetchMetadata(batchIDs);
+		for (int i = 0; i < batch.m_size; i++) {
+			if (imageIDs) {
+				batch.m_imgIDs[i] = ids[i];
+				// unresolved IDs fail in the loader and are logged
+				batch.m_pixelIDs[i] = meta.containsImage(ids[i]) ? meta
+						.getPixelID(ids[i]) : -1;
+			} else {
+				batch.m_pixelIDs[i] = ids[i];
+				batch.m_imgIDs[i] = meta.contains(ids[i]) ? meta
+						.getImageID(ids[i]) : -1;
+			}
+		}
+		batch.m_meta = meta;
+		return batch;
+	}
+
+	/** a batch of input rows and their resolved IDs. */
+	private static final class Batch {
+
+		private final RowKey[] m_keys = new RowKey[BATCH_SIZE];
+
+		private final long[] m_pixelIDs = new long[BATCH_SIZE];
+
+		private final long[] m_imgIDs = new long[BATCH_SIZE];
+
+		private ImageMetadata m_meta;
+
+		/** number of IDs in the batch. */
+		private int m_size;
+
+		/** index of the next ID to submit. */
+		private int m_next;
+
+		/** number of rows without ID. */
+		private long m_skipped;
+
+		/** true if the input has no more rows. */
+		private boolean m_last;
+	}
+
+	/**
+	 * @param spec
+	 *            the spec of the input table
+	 * @return the index of the ID column, guessed if not yet configured
+	 * @throws InvalidSettingsException
+	 *             if the table has no suitable column
+	 */
+	private int getIDColumnIndex(final DataTableSpec spec)
+			throws InvalidSettingsException {
+		final String name = m_idColumnSM.getStringValue();
+		if (name.isEmpty()) {
+			// preselect the last integer column
+			for (int i = spec.getNumColumns() - 1; i >= 0; i--) {
+				final DataColumnSpec col = spec.getColumnSpec(i);
+				if (col.getType().isCompatible(LongValue.class)) {
+					m_idColumnSM.setStringValue(col.getName());
+					return i;
+				}
+			}
+			throw new InvalidSettingsException(
+					"the input table has no integer column with OMERO IDs");
+		}
+
+		final int index = spec.findColumnIndex(name);
+		if (index < 0) {
+			throw new InvalidSettingsException("column " + name
+					+ " not found in the input table");
+		}
+		if (!spec.getColumnSpec(index).getType()
+				.isCompatible(LongValue.class)) {
+			throw new InvalidSettingsException("column " + name
+					+ " does not contain integer IDs");
+		}
+		return index;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void saveSettingsTo(final NodeSettingsWO settings) {
+		super.saveSettingsTo(settings);
+		m_idColumnSM.saveSettingsTo(settings);
+		m_idTypeSM.saveSettingsTo(settings);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void loadValidatedSettingsFrom(final NodeSettingsRO settings)
+			throws InvalidSettingsException {
+		super.loadValidatedSettingsFrom(settings);
+		m_idColumnSM.loadSettingsFrom(settings);
+		m_idTypeSM.loadSettingsFrom(settings);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void validateSettings(final NodeSettingsRO settings)
+			throws InvalidSettingsException {
+		super.validateSettings(settings);
+		m_idColumnSM.validateSettings(settings);
+		m_idTypeSM.validateSettings(settings);
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.omero.insight;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * an OMERO project, dataset or image addressed by a path of the form
+ * <code>ome://host:port/dataset/ID</code>, as used by the OMERO remote files.
+ * Scheme and authority are optional, i.e. <code>/project/ID</code> is
+ * accepted as well.
+ */
+public final class ContainerPath {
+
+	/** the OMERO object type a path points to. */
+	public enum Type {
+		/** all images of the datasets of a project. */
+		PROJECT,
+		/** all images of a dataset. */
+		DATASET,
+		/** a single image. */
+		IMAGE
+	}
+
+	private final Type m_type;
+
+	private final long m_id;
+
+	/** the host of the path, null if none is given. */
+	private final String m_host;
+
+	private ContainerPath(final Type type, final long id, final String host) {
+		m_type = type;
+		m_id = id;
+		m_host = host;
+	}
+
+	/**
+	 * @param text
+	 *            the path, e.g. <code>ome://host/dataset/42</code>
+	 * @return the parsed path
+	 * @throws IllegalArgumentException
+	 *             if the text is not a valid path
+	 */
+	public static ContainerPath parse(final String text) {
+		final URI uri;
+		try {
+			uri = new URI(text.trim());
+		} catch (final URISyntaxException e) {
+			throw new IllegalArgumentException("invalid OMERO path \"" + text
+					+ "\"", e);
+		}
+		if ((uri.getScheme() != null) && !"ome".equals(uri.getScheme())) {
+			throw new IllegalArgumentException("invalid OMERO path \"" + text
+					+ "\", expected the ome scheme");
+		}
+
+		// "", type, ID
+		final String[] tokens = uri.getPath() == null ? new String[0] : uri
+				.getPath().split("/");
+		if ((tokens.length != 3) || !tokens[0].isEmpty()) {
+			throw new IllegalArgumentException("invalid OMERO path \"" + text
+					+ "\", expected ome://host/project|dataset|image/ID");
+		}
+		final Type type;
+		try {
+			type = Type.valueOf(tokens[1].toUpperCase());
+		} catch (final IllegalArgumentException e) {
+			throw new IllegalArgumentException("invalid OMERO path \"" + text
+					+ "\", " + tokens[1] + " is no project, dataset or image",
+					e);
+		}
+		try {
+			return new ContainerPath(type, Long.parseLong(tokens[2]),
+					uri.getHost());
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException("invalid OMERO path \"" + text
+					+ "\", " + tokens[2] + " is no ID", e);
+		}
+	}
+
+	/**
+	 * @return the type of the addressed object
+	 */
+	public Type getType() {
+		return m_type;
+	}
+
+	/**
+	 * @return the OMERO ID of the addressed object
+	 */
+	public long getID() {
+		return m_id;
+	}
+
+	/**
+	 * @return the host given in the path, null if the path has none
+	 */
+	public String getHost() {
+		return m_host;
+	}
+
+	@Override
+	public String toString() {
+		return "/" + m_type.name().toLowerCase() + "/" + m_id;
+	}
+}
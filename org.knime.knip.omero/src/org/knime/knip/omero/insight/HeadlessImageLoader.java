@@ -52,12 +52,21 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.knime.core.node.NodeLogger;
 import org.knime.knip.omero.OmeroReaderNodeModel;
-import org.knime.knip.omero.omerojava.GatewayUtilsExcerpt;
-import org.knime.knip.omero.omerojava.Plane1D;
 import org.openmicroscopy.shoola.env.Container;
 import org.openmicroscopy.shoola.env.LookupNames;
 import org.openmicroscopy.shoola.env.config.Registry;
@@ -74,8 +83,6 @@ import org.openmicroscopy.shoola.env.event.AgentEventListener;
 import org.openmicroscopy.shoola.env.init.StartupException;
 
 import net.imagej.ImgPlus;
-import net.imglib2.FinalInterval;
-import net.imglib2.Interval;
 import net.imglib2.img.Img;
 import net.imglib2.img.basictypeaccess.PlanarAccess;
 import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
@@ -83,13 +90,25 @@ import net.imglib2.img.planar.PlanarImgFactory;
 import net.imglib2.iterator.IntervalIterator;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.util.IntervalIndexer;
+import omero.RLong;
+import omero.RType;
 import omero.ServerError;
+import omero.api.IQueryPrx;
+import omero.api.RawPixelsStorePrx;
+import omero.api.ResolutionDescription;
+import omero.gateway.Gateway;
+import omero.gateway.LoginCredentials;
 import omero.gateway.SecurityContext;
 import omero.gateway.exception.DSAccessException;
 import omero.gateway.exception.DSOutOfServiceException;
 import omero.gateway.model.ExperimenterData;
 import omero.gateway.model.ImageData;
 import omero.gateway.model.PixelsData;
+import omero.log.SimpleLogger;
+import omero.model.Details;
+import omero.model.IObject;
+import omero.model.Pixels;
+import omero.sys.ParametersI;
 
 
 /**
@@ -120,6 +139,50 @@ public class HeadlessImageLoader implements AgentEventListener {
 	/** group id of the logged in experimenter. */
 	private long m_groupID;
 
+	/** number of plane requests that are sent to OMERO concurrently. */
+	private int m_parallelPlaneRequests = 1;
+
+	/** fetches and decodes planes, created on connect. */
+	private ExecutorService m_planeFetchPool;
+
+	/** number of planes loaded since the last connect. */
+	private final AtomicLong m_planesLoaded = new AtomicLong();
+
+	/** time of the last connect as returned by {@link System#nanoTime()}. */
+	private long m_connectTime;
+
+	/** number of pixel IDs resolved by a single metadata query. */
+	private static final int METADATA_BATCH_SIZE = 1000;
+
+	/**
+	 * blitz session used for batched metadata queries and pixels stores. The
+	 * Insight container does not expose its own session, so this is a second
+	 * login with the same credentials. There is at most one per loader: it is
+	 * opened on first use and closed on disconnect and on the next connect.
+	 */
+	private Gateway m_metadataGateway;
+
+	/** metadata resolved by {@link #prefetchMetadata(long[])}, may be null. */
+	private volatile ImageMetadata m_metadata;
+
+	/**
+	 * metadata resolved by the call before, images of that batch may still be
+	 * loading while the next batch is resolved.
+	 */
+	private volatile ImageMetadata m_previousMetadata;
+
+	/** the part of each image that is loaded. */
+	private volatile ImageRegion m_region = ImageRegion.ALL;
+
+	/** longer edge the images are downsampled to, 0 for full resolution. */
+	private volatile int m_targetEdgeLength;
+
+	/** persistent plane cache, null if planes are not cached. */
+	private volatile PlaneDiskCache m_planeCache;
+
+	/** images larger than this are memory-mapped, 0 to never map. */
+	private volatile long m_mappedStorageThreshold;
+
 	/**
 	 * @param uc
 	 *            {@link HeadlessImageLoader#m_userCredentials
@@ -148,15 +211,112 @@ public class HeadlessImageLoader implements AgentEventListener {
 	 * @throws StartupException
 	 */
 	public boolean connect() throws StartupException {
+		// never keep a session of an earlier connection
+		closeMetadataGateway();
 		m_isConnected = connectPriv();
+		if (m_isConnected) {
+			m_planeFetchPool = createPlaneFetchPool(m_parallelPlaneRequests);
+			m_planesLoaded.set(0);
+			m_connectTime = System.nanoTime();
+		}
 		return m_isConnected;
 	}
 
+	/**
+	 * sets the number of plane requests that are sent to OMERO concurrently
+	 * while an image is assembled. Takes effect on the next
+	 * {@link #connect()}.
+	 *
+	 * @param parallelPlaneRequests
+	 *            number of concurrent plane requests, at least 1
+	 */
+	public void setParallelPlaneRequests(final int parallelPlaneRequests) {
+		if (parallelPlaneRequests < 1) {
+			throw new IllegalArgumentException(
+					"at least one plane request is required");
+		}
+		m_parallelPlaneRequests = parallelPlaneRequests;
+	}
+
+	/**
+	 * restricts the images loaded by {@link #getImage(long, long)} to an XY
+	 * box and ranges of Z, C and T indices.
+	 *
+	 * @param region
+	 *            the part of each image that is loaded
+	 */
+	public void setRegion(final ImageRegion region) {
+		m_region = region;
+	}
+
+	/**
+	 * reads downsampled images: the smallest pre-computed resolution level
+	 * whose longer edge is at least the given length is used. Images without
+	 * such a level are subsampled while they are read. The XY box of the
+	 * {@link #setRegion(ImageRegion) region} stays in full resolution
+	 * coordinates.
+	 *
+	 * @param targetEdgeLength
+	 *            the minimal length of the longer edge, 0 for full resolution
+	 */
+	public void setTargetEdgeLength(final int targetEdgeLength) {
+		m_targetEdgeLength = targetEdgeLength;
+	}
+
+	/**
+	 * caches the loaded planes on disk, so later runs read them locally as
+	 * long as the image is not modified on the server. Only images whose
+	 * metadata has been {@link #prefetchMetadata(long[]) prefetched} are
+	 * cached, as the metadata holds their update time.
+	 *
+	 * @param planeCache
+	 *            the cache to use, null to always load from the server
+	 */
+	public void setPlaneCache(final PlaneDiskCache planeCache) {
+		m_planeCache = planeCache;
+	}
+
+	/**
+	 * stores images larger than the given size in a memory-mapped temporary
+	 * file instead of the Java heap, see {@link MappedPlanarImg}. The heap
+	 * then only holds the planes that are in flight.
+	 *
+	 * @param threshold
+	 *            size of an image in bytes above which it is mapped, 0 to
+	 *            always use the heap
+	 */
+	public void setMappedStorageThreshold(final long threshold) {
+		m_mappedStorageThreshold = threshold;
+	}
+
+	/**
+	 * @return the number of planes loaded since the last connect
+	 */
+	public long getPlanesLoaded() {
+		return m_planesLoaded.get();
+	}
+
+	/**
+	 * @return the average number of planes loaded per second since the last
+	 *         connect
+	 */
+	public double getPlanesPerSecond() {
+		final double seconds = (System.nanoTime() - m_connectTime) / 1e9;
+		return seconds > 0 ? m_planesLoaded.get() / seconds : 0;
+	}
+
 	/**
 	 * closes the OMERO connection and adjusts.
 	 * {@link HeadlessImageLoader#m_isConnected m_isConnected}
 	 */
 	public void disconnect() {
+		if (m_planeFetchPool != null) {
+			m_planeFetchPool.shutdownNow();
+			m_planeFetchPool = null;
+		}
+		closeMetadataGateway();
+		m_metadata = null;
+		m_previousMetadata = null;
 		if (m_isConnected) {
 			m_isConnected = false;
 			final ExitApplication ev = new ExitApplication(false);
@@ -204,6 +364,199 @@ public class HeadlessImageLoader implements AgentEventListener {
 		return ids.toArray(new Long[] {});
 	}
 
+	/**
+	 * resolves the image ID, the dimensions and the pixel type of all given
+	 * pixel IDs with one server query per {@link #METADATA_BATCH_SIZE} IDs
+	 * instead of three round trips per image. The result is kept until
+	 * {@link #disconnect()} and used by {@link #getImage(long, long)}, the
+	 * result of the call before is kept as well, so its images can still be
+	 * loaded while the next batch is resolved. Pixel
+	 * IDs that do not exist or are not readable are missing from the result.
+	 *
+	 * @param pixelIDs
+	 *            list of OMERO pixel IDs
+	 * @return the metadata of the images that belong to these pixel IDs
+	 * @throws DSOutOfServiceException
+	 * @throws DSAccessException
+	 * @throws ServerError
+	 */
+	public ImageMetadata prefetchMetadata(final long[] pixelIDs)
+			throws DSOutOfServiceException, DSAccessException, ServerError {
+		return prefetchMetadata(pixelIDs, "p.id", "");
+	}
+
+	/**
+	 * expands a project, dataset or image to the pixel IDs of all images it
+	 * contains with a single query.
+	 *
+	 * @param path
+	 *            the container to expand
+	 * @return the pixel IDs in ascending order
+	 * @throws DSOutOfServiceException
+	 * @throws ServerError
+	 */
+	public long[] resolveContainer(final ContainerPath path)
+			throws DSOutOfServiceException, ServerError {
+		if (!m_isConnected) {
+			throw new DSOutOfServiceException("not connected");
+		}
+
+		final String query;
+		switch (path.getType()) {
+		case PROJECT:
+			query = "select distinct p.id from Pixels p, DatasetImageLink dl, "
+					+ "ProjectDatasetLink pl where p.image = dl.child "
+					+ "and dl.parent = pl.child and pl.parent.id = :id "
+					+ "order by p.id";
+			break;
+		case DATASET:
+			query = "select p.id from Pixels p, DatasetImageLink dl "
+					+ "where p.image = dl.child and dl.parent.id = :id "
+					+ "order by p.id";
+			break;
+		case IMAGE:
+			query = "select p.id from Pixels p where p.image.id = :id "
+					+ "order by p.id";
+			break;
+		default:
+			throw new IllegalArgumentException("unsupported container "
+					+ path);
+		}
+
+		final List<List<RType>> rows = getMetadataGateway().getQueryService(
+				new SecurityContext(m_groupID)).projection(query,
+				new ParametersI().addId(path.getID()));
+		final long[] pixelIDs = new long[rows.size()];
+		for (int i = 0; i < pixelIDs.length; i++) {
+			pixelIDs[i] = ((RLong) rows.get(i).get(0)).getValue();
+		}
+		return pixelIDs;
+	}
+
+	/**
+	 * resolves the default pixels of all given image IDs like
+	 * {@link #prefetchMetadata(long[])} does for pixel IDs. Use
+	 * {@link ImageMetadata#getPixelID(long)} to find the pixel ID of an image.
+	 *
+	 * @param imageIDs
+	 *            list of OMERO image IDs
+	 * @return the metadata of these images
+	 * @throws DSOutOfServiceException
+	 * @throws DSAccessException
+	 * @throws ServerError
+	 */
+	public ImageMetadata prefetchImageMetadata(final long[] imageIDs)
+			throws DSOutOfServiceException, DSAccessException, ServerError {
+		// one pixels set per image, the one with the lowest ID
+		return prefetchMetadata(imageIDs, "p.image.id", "and p.id = (select "
+				+ "min(p2.id) from Pixels p2 where p2.image = i)");
+	}
+
+	/**
+	 * @param ids
+	 *            pixel or image IDs
+	 * @param idPath
+	 *            HQL path of the ID in the Pixels query
+	 * @param filter
+	 *            further HQL conditions of the Pixels query, may be empty
+	 * @return the resolved metadata
+	 */
+	private ImageMetadata prefetchMetadata(final long[] ids,
+			final String idPath, final String filter) throws DSOutOfServiceException,
+			DSAccessException, ServerError {
+		if (!m_isConnected) {
+			throw new DSOutOfServiceException("not connected");
+		}
+
+		final IQueryPrx query = getMetadataGateway().getQueryService(
+				new SecurityContext(m_groupID));
+		final ImageMetadata meta = new ImageMetadata(ids.length);
+
+		for (int from = 0; from < ids.length; from += METADATA_BATCH_SIZE) {
+			final int to = Math.min(from + METADATA_BATCH_SIZE, ids.length);
+			final List<Long> batch = new ArrayList<>(to - from);
+			for (int i = from; i < to; i++) {
+				batch.add(ids[i]);
+			}
+			final ParametersI params = new ParametersI();
+			params.addIds(batch);
+
+			for (final IObject obj : query.findAllByQuery(
+					"select p from Pixels as p join fetch p.image as i "
+							+ "join fetch p.pixelsType "
+							+ "left outer join fetch p.details.updateEvent "
+							+ "left outer join fetch i.details.updateEvent "
+							+ "where " + idPath + " in (:ids) " + filter,
+					params)) {
+				final Pixels pixels = (Pixels) obj;
+				final PixelsData pix = new PixelsData(pixels);
+				meta.add(pix.getId(), pix.getImage().getId(), pix.getSizeX(),
+						pix.getSizeY(), pix.getSizeZ(), pix.getSizeT(),
+						pix.getSizeC(), pix.getPixelType(),
+						Math.max(updateTime(pixels), updateTime(pixels
+								.getImage())));
+			}
+		}
+		meta.seal();
+
+		m_previousMetadata = m_metadata;
+		m_metadata = meta;
+		return meta;
+	}
+
+	/**
+	 * @param pixelID
+	 *            the OMERO pixel ID
+	 * @return the prefetched metadata holding the pixel ID, the latest one if
+	 *         none does, null if nothing has been prefetched
+	 */
+	private ImageMetadata metadataOf(final long pixelID) {
+		final ImageMetadata meta = m_metadata;
+		if ((meta == null) || meta.contains(pixelID)) {
+			return meta;
+		}
+		final ImageMetadata previous = m_previousMetadata;
+		return (previous != null) && previous.contains(pixelID) ? previous
+				: meta;
+	}
+
+	/**
+	 * @return the connected blitz gateway of this loader, see
+	 *         {@link #m_metadataGateway}
+	 * @throws DSOutOfServiceException
+	 */
+	private synchronized Gateway getMetadataGateway()
+			throws DSOutOfServiceException {
+		if (m_metadataGateway == null) {
+			final LoginCredentials creds = new LoginCredentials(
+					m_userCredentials.getUserName(),
+					m_userCredentials.getPassword(),
+					m_userCredentials.getHostName(),
+					m_userCredentials.getPort());
+			creds.setEncryption(m_userCredentials.isEncrypted());
+
+			final Gateway gateway = new Gateway(new SimpleLogger());
+			try {
+				gateway.connect(creds);
+			} catch (final DSOutOfServiceException e) {
+				gateway.disconnect();
+				throw e;
+			}
+			m_metadataGateway = gateway;
+		}
+		return m_metadataGateway;
+	}
+
+	/**
+	 * closes the session of {@link #getMetadataGateway()} if it is open.
+	 */
+	private synchronized void closeMetadataGateway() {
+		if (m_metadataGateway != null) {
+			m_metadataGateway.disconnect();
+			m_metadataGateway = null;
+		}
+	}
+
 	/**
 	 * loads a image with the specified ID from OMERO using the headless.
 	 * connection
@@ -227,19 +580,34 @@ public class HeadlessImageLoader implements AgentEventListener {
 			throw new DSOutOfServiceException("not connected");
 		}
 
-		// retrieve dimensionality
-		final LinkedList<Long> idList = new LinkedList<Long>();
-		idList.add(imageID);
-		final int[] dimLengths = getDimensions(idList)[0];
+		final int[] dimLengths;
+		final String typeString;
+		final ImageMetadata meta = metadataOf(pixelID);
+		if (meta != null) {
+			// resolved up front by prefetchMetadata
+			if (!meta.contains(pixelID)) {
+				throw new DSAccessException("no readable image with pixel ID "
+						+ pixelID);
+			}
+			dimLengths = meta.getDimensions(pixelID);
+			typeString = meta.getImageType(pixelID);
+		} else {
+			// retrieve dimensionality
+			final LinkedList<Long> idList = new LinkedList<Long>();
+			idList.add(imageID);
+			dimLengths = getDimensions(idList)[0];
 
-		// retrieve type
-		final String typeString = getImageTypes(idList)[0];
+			// retrieve type
+			typeString = getImageTypes(idList)[0];
+		}
 
 		// load pixel data
-		final Img<RealType> img = assembleImage(pixelID, typeString, dimLengths);
+		final double[] calibration = new double[dimLengths.length];
+		final Img<RealType> img = assembleImage(pixelID, typeString,
+				dimLengths, calibration);
 
 		return new ImgPlus<>(img, "" + pixelID,
-				OmeroKnimeConversionHelper.getAxes());
+				OmeroKnimeConversionHelper.getAxes(), calibration);
 	}
 
 	/**
@@ -319,15 +687,23 @@ public class HeadlessImageLoader implements AgentEventListener {
 
 	/**
 	 * loads an image planewise from OMERO and assembles the result to create an
-	 * ImgLib image.
+	 * ImgLib image. Only the planes and the XY box selected by
+	 * {@link #m_region} are requested. Up to {@link #m_parallelPlaneRequests}
+	 * planes are requested concurrently and each plane is decoded by the
+	 * thread that fetched it, so decoding overlaps with waiting for the
+	 * server. Planes are put into place by their index, independent of the
+	 * order in which they arrive.
 	 *
-	 * @param imageID
-	 *            the OMERO image ID of the image that should be assembled
+	 * @param pixelID
+	 *            the OMERO pixel ID of the image that should be assembled
 	 * @param typeString
 	 *            string identifier of a image type
 	 *            {@link org.knime.knip.omero.omerojava.PixelTypes PixelTypes}
 	 * @param dimLengths
 	 *            length of the 5 OMERO dimensions
+	 * @param calibration
+	 *            receives the size of a loaded pixel in pixels of the full
+	 *            resolution image per dimension
 	 * @return the loaded image in ImgLib format
 	 *
 	 * @throws DSOutOfServiceException
@@ -335,63 +711,628 @@ public class HeadlessImageLoader implements AgentEventListener {
 	 * @throws FSAccessException
 	 * @throws ServerError
 	 */
-	@SuppressWarnings("rawtypes")
-	private Img<RealType> assembleImage(final long imageID,
-			final String typeString, final int[] dimLengths)
-			throws DSOutOfServiceException, DSAccessException,
-			FSAccessException, ServerError {
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private Img<RealType> assembleImage(final long pixelID,
+			final String typeString, final int[] dimLengths,
+			final double[] calibration) throws DSOutOfServiceException,
+			DSAccessException, FSAccessException, ServerError {
 
 		if (!m_isConnected) {
-			new DSOutOfServiceException("not connected");
+			throw new DSOutOfServiceException("not connected");
 		}
 		final OmeroImageService imgSvc = m_container.getRegistry()
 				.getImageService();
+		final SecurityContext ctx = new SecurityContext(m_groupID);
+
+		// partial or downsampled planes are read tile wise, one pixels store
+		// per fetch thread. stores holds every opened store until it is
+		// closed, idle the ones no task is reading from.
+		final Queue<RawPixelsStorePrx> stores = new ConcurrentLinkedQueue<>();
+		final Queue<RawPixelsStorePrx> idle = new ConcurrentLinkedQueue<>();
+
+		// the selected part of the image in full resolution
+		final ImageRegion region = m_region;
+		final int fullX = region.getX();
+		final int fullY = region.getY();
+		final int fullWidth = region.getWidth(dimLengths[0]);
+		final int fullHeight = region.getHeight(dimLengths[1]);
+
+		// the resolution to read at
+		final Resolution res;
+		try {
+			res = chooseResolution(pixelID, dimLengths[0], dimLengths[1],
+					stores);
+		} catch (final ServerError | DSOutOfServiceException
+				| RuntimeException e) {
+			closePixelsStores(stores);
+			throw e;
+		}
+		idle.addAll(stores);
+		Arrays.fill(calibration, 1);
+		calibration[0] = res.m_scaleX;
+		calibration[1] = res.m_scaleY;
+		calibration[2] = region.getZ().getStep();
+		calibration[3] = region.getT().getStep();
+
+		final int x;
+		final int y;
+		final int width;
+		final int height;
+		if (res.m_step > 1) {
+			// read the full resolution box, keep every step-th pixel
+			x = fullX;
+			y = fullY;
+			width = fullWidth;
+			height = fullHeight;
+		} else {
+			x = (int) (fullX / res.m_scaleX);
+			y = (int) (fullY / res.m_scaleY);
+			width = Math.min(Math.max(1, (int) (fullWidth / res.m_scaleX)),
+					res.m_sizeX - x);
+			height = Math.min(
+					Math.max(1, (int) (fullHeight / res.m_scaleY)),
+					res.m_sizeY - y);
+		}
+		final int outWidth = ((width + res.m_step) - 1) / res.m_step;
+		final int outHeight = ((height + res.m_step) - 1) / res.m_step;
+
+		final int[] zct = new int[] { region.getZ().count(dimLengths[2]),
+				region.getT().count(dimLengths[3]),
+				region.getC().count(dimLengths[4]) };
+		if ((width <= 0) || (height <= 0) || (zct[0] == 0) || (zct[1] == 0)
+				|| (zct[2] == 0)) {
+			closePixelsStores(stores);
+			throw new IllegalArgumentException("the selected region of image "
+					+ pixelID + " is empty");
+		}
+		final boolean fullPlanes = (res.m_level < 0) && (res.m_step == 1)
+				&& region.isFullPlane(dimLengths[0], dimLengths[1]);
+
+		// cached planes are only valid as long as the image is not modified
+		final ImageMetadata meta = metadataOf(pixelID);
+		final PlaneDiskCache cache = m_planeCache;
+		final long updateTime = (cache != null) && (meta != null)
+				&& meta.contains(pixelID) ? meta.getUpdateTime(pixelID) : -1;
+		final String server = m_userCredentials.getHostName() + "_"
+				+ m_userCredentials.getPort();
 
 		// create image & get container
 		final RealType type = OmeroKnimeConversionHelper.makeType(typeString);
 
-		@SuppressWarnings("unchecked")
-		final Img<RealType> img = new PlanarImgFactory().create(dimLengths,
-				type);
+		// large images are kept off the heap
+		final long threshold = m_mappedStorageThreshold;
+		final long imgBytes = (long) outWidth * outHeight * zct[0] * zct[1]
+				* zct[2] * ImageMetadata.bytesPerPixel(typeString);
+		final PlanarImgFactory factory = (threshold > 0)
+				&& (imgBytes > threshold) ? new MappedPlanarImgFactory()
+				: new PlanarImgFactory();
+		final Img<RealType> img;
+		try {
+			img = factory.create(new int[] { outWidth, outHeight, zct[0],
+					zct[1], zct[2] }, type);
+		} catch (final RuntimeException e) {
+			closePixelsStores(stores);
+			throw e;
+		}
 		@SuppressWarnings("unchecked")
 		final PlanarAccess<ArrayDataAccess<?>> planarAccess = (PlanarAccess<ArrayDataAccess<?>>) img;
 
-		// populate planes
-		final long[] dimL = new long[dimLengths.length];
-		for (int i = 0; i < dimLengths.length; i++) {
-			dimL[i] = dimLengths[i];
+		final IntervalIterator ii = new IntervalIterator(zct);
+		final ArrayDataAccess<?>[] planes = new ArrayDataAccess<?>[zct[0]
+				* zct[1] * zct[2]];
+
+		// request the selected planes, each task stores its decoded plane
+		final CompletionService<Integer> completion = new ExecutorCompletionService<>(
+				m_planeFetchPool);
+		final TaskGate gate = new TaskGate();
+		final List<Future<Integer>> requests = new ArrayList<>(planes.length);
+		while (ii.hasNext()) {
+			ii.fwd();
+			final int[] pos = new int[ii.numDimensions()];
+			ii.localize(pos);
+			final int z = region.getZ().sourceIndex(pos[0]);
+			final int t = region.getT().sourceIndex(pos[1]);
+			final int c = region.getC().sourceIndex(pos[2]);
+
+			requests.add(completion.submit(() -> {
+				if (!gate.enter()) {
+					throw new CancellationException();
+				}
+				try {
+					final int no = IntervalIndexer.positionToIndex(pos, zct);
+					final String key = updateTime < 0 ? null : PlaneDiskCache
+							.key(server, pixelID, z, c, t, x, y, width,
+									height, res.m_level, res.m_step);
+					if (key != null) {
+						planes[no] = cache.get(key, updateTime);
+						if (planes[no] != null) {
+							return no;
+						}
+					}
+					if (fullPlanes) {
+						final byte[] rawData = imgSvc.getPlane(ctx, pixelID,
+								z, t, c);
+						planes[no] = OmeroKnimeConversionHelper
+								.makeDataAccessArray(typeString, width,
+										height, rawData);
+					} else {
+						RawPixelsStorePrx store = idle.poll();
+						if (store == null) {
+							store = createPixelsStore(pixelID, res.m_level);
+							stores.add(store);
+						}
+						try {
+							planes[no] = res.m_step > 1 ? readDecimated(
+									store, typeString, z, c, t, x, y, width,
+									height, res.m_step) : readRegion(store,
+									typeString, z, c, t, x, y, width, height);
+						} finally {
+							idle.add(store);
+						}
+					}
+					if (key != null) {
+						cache.put(key, updateTime, planes[no]);
+					}
+					return no;
+				} finally {
+					gate.leave();
+				}
+			}));
+		}
+
+		// put the planes into place as they arrive
+		try {
+			for (int i = 0; i < requests.size(); i++) {
+				final int no = completion.take().get();
+				planarAccess.setPlane(no, planes[no]);
+				// a mapped image holds a copy
+				planes[no] = null;
+				m_planesLoaded.incrementAndGet();
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DSOutOfServiceException("interrupted while loading "
+					+ pixelID, e);
+		} catch (final ExecutionException e) {
+			rethrowPlaneFailure(e);
+		} finally {
+			// a running Ice call does not stop on interrupt, so the stores
+			// are only closed once no task can use or open one anymore
+			for (final Future<Integer> request : requests) {
+				request.cancel(false);
+			}
+			gate.closeAndAwait();
+			closePixelsStores(stores);
+		}
+
+		return img;
+	}
+
+	/**
+	 * tracks the plane tasks of one image. Once closed no task starts
+	 * anymore, so the pixels stores can be closed after the running ones have
+	 * left. Futures are no help here: a cancelled future reports done while
+	 * its task may still be inside an Ice call.
+	 */
+	private static final class TaskGate {
+
+		private int m_running;
+
+		private boolean m_closed;
+
+		/**
+		 * @return false if the gate is closed and the task must not run
+		 */
+		private synchronized boolean enter() {
+			if (m_closed) {
+				return false;
+			}
+			m_running++;
+			return true;
+		}
+
+		private synchronized void leave() {
+			m_running--;
+			notifyAll();
+		}
+
+		/**
+		 * closes the gate and waits until all running tasks have left. An
+		 * interrupt does not stop the waiting, it is restored afterwards.
+		 */
+		private synchronized void closeAndAwait() {
+			m_closed = true;
+			boolean interrupted = Thread.interrupted();
+			while (m_running > 0) {
+				try {
+					wait();
+				} catch (final InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
 		}
+	}
+
+	/** the resolution an image is read at. */
+	private static final class Resolution {
+
+		/** pyramid level of the pixels store, -1 for full resolution. */
+		private final int m_level;
+
+		/** size of the level. */
+		private final int m_sizeX;
+
+		private final int m_sizeY;
+
+		/** full resolution pixels per read pixel. */
+		private final double m_scaleX;
 
-		final Interval interval = new FinalInterval(dimL);
-		final int[] zct = new int[3];
-		Arrays.fill(zct, 1);
-		for (int i = 0; i < zct.length; i++) {
-			if ((i + 2) >= img.numDimensions()) {
+		private final double m_scaleY;
+
+		/** only every step-th pixel of the full resolution is kept. */
+		private final int m_step;
+
+		private Resolution(final int level, final int sizeX, final int sizeY,
+				final double scaleX, final double scaleY, final int step) {
+			m_level = level;
+			m_sizeX = sizeX;
+			m_sizeY = sizeY;
+			m_scaleX = scaleX;
+			m_scaleY = scaleY;
+			m_step = step;
+		}
+	}
+
+	/**
+	 * picks the smallest pre-computed pyramid level whose longer edge is at
+	 * least {@link #m_targetEdgeLength}. If the image has no such level it is
+	 * read at full resolution and only every n-th pixel is kept.
+	 *
+	 * @param pixelID
+	 *            the OMERO pixel ID
+	 * @param sizeX
+	 *            width of the full resolution image
+	 * @param sizeY
+	 *            height of the full resolution image
+	 * @param stores
+	 *            receives the pixels store opened to inspect the pyramid
+	 * @return the resolution to read at
+	 * @throws DSOutOfServiceException
+	 * @throws ServerError
+	 */
+	private Resolution chooseResolution(final long pixelID, final int sizeX,
+			final int sizeY, final Queue<RawPixelsStorePrx> stores)
+			throws DSOutOfServiceException, ServerError {
+		final int target = m_targetEdgeLength;
+		final int edge = Math.max(sizeX, sizeY);
+		if ((target <= 0) || (edge <= target)) {
+			return new Resolution(-1, sizeX, sizeY, 1, 1, 1);
+		}
+
+		final RawPixelsStorePrx store = createPixelsStore(pixelID, -1);
+		stores.add(store);
+
+		// ordered from full resolution to the smallest level
+		final ResolutionDescription[] levels = store
+				.getResolutionDescriptions();
+		int chosen = 0;
+		for (int i = 1; (levels != null) && (i < levels.length); i++) {
+			if (Math.max(levels[i].sizeX, levels[i].sizeY) < target) {
 				break;
 			}
-			zct[i] = (int) interval.dimension(i + 2);
+			chosen = i;
 		}
 
-		final IntervalIterator ii = new IntervalIterator(zct);
+		if (chosen > 0) {
+			// level numbers count up from the smallest level
+			final int level = levels.length - 1 - chosen;
+			store.setResolutionLevel(level);
+			LOGGER.debug("reading image " + pixelID + " at resolution level "
+					+ level + " (" + levels[chosen].sizeX + "x"
+					+ levels[chosen].sizeY + ")");
+			return new Resolution(level, levels[chosen].sizeX,
+					levels[chosen].sizeY, (double) sizeX
+							/ levels[chosen].sizeX, (double) sizeY
+							/ levels[chosen].sizeY, 1);
+		}
 
-		// open the selected planes
-		final int[] pos = new int[ii.numDimensions()];
-		while (ii.hasNext()) {
-			ii.fwd();
-			ii.localize(pos);
+		final int step = edge / target;
+		LOGGER.debug("image " + pixelID
+				+ " has no suitable resolution level, keeping every " + step
+				+ "th pixel");
+		return new Resolution(-1, sizeX, sizeY, step, step, step);
+	}
 
-			final byte[] rawData = imgSvc.getPlane(new SecurityContext(
-					m_groupID), imageID, pos[0], pos[1], pos[2]);
-			final int no = IntervalIndexer.positionToIndex(pos, zct);
+	/**
+	 * @param obj
+	 *            an OMERO object with loaded details
+	 * @return the time of its last update in ms, -1 if unknown
+	 */
+	private static long updateTime(final IObject obj) {
+		final Details details = obj.getDetails();
+		if ((details == null) || (details.getUpdateEvent() == null)
+				|| !details.getUpdateEvent().isLoaded()
+				|| (details.getUpdateEvent().getTime() == null)) {
+			return -1;
+		}
+		return details.getUpdateEvent().getTime().getValue();
+	}
 
-			final Plane1D p1d = GatewayUtilsExcerpt.getPlane1D(dimLengths[0],
-					dimLengths[1], typeString, rawData);
+	/**
+	 * @param pixelID
+	 *            the OMERO pixel ID
+	 * @param level
+	 *            the resolution level to read, -1 for full resolution
+	 * @return a pixels store of the metadata session that reads the given
+	 *         pixels
+	 * @throws DSOutOfServiceException
+	 * @throws ServerError
+	 */
+	private RawPixelsStorePrx createPixelsStore(final long pixelID,
+			final int level) throws DSOutOfServiceException, ServerError {
+		final RawPixelsStorePrx store = getMetadataGateway().createPixelsStore(
+				new SecurityContext(m_groupID));
+		store.setPixelsId(pixelID, false);
+		if (level >= 0) {
+			store.setResolutionLevel(level);
+		}
+		return store;
+	}
 
-			planarAccess.setPlane(no, OmeroKnimeConversionHelper
-					.makeDataAccessArray(typeString, p1d));
+	/**
+	 * closes the given pixels stores, failures are only logged.
+	 *
+	 * @param stores
+	 *            the stores to close
+	 */
+	private void closePixelsStores(final Queue<RawPixelsStorePrx> stores) {
+		RawPixelsStorePrx store;
+		while ((store = stores.poll()) != null) {
+			try {
+				store.close();
+			} catch (final ServerError e) {
+				LOGGER.debug("could not close pixels store", e);
+			}
 		}
+	}
 
-		return img;
+	/**
+	 * reads a box of a plane in tiles no larger than the tile size of the
+	 * server and stitches them into one plane, so memory scales with the box
+	 * and not with the plane.
+	 *
+	 * @param store
+	 *            a store reading the pixels of the image
+	 * @param typeString
+	 *            string identifier of a image type
+	 * @param z
+	 *            Z index of the plane
+	 * @param c
+	 *            channel of the plane
+	 * @param t
+	 *            time point of the plane
+	 * @param x
+	 *            left border of the box
+	 * @param y
+	 *            top border of the box
+	 * @param width
+	 *            width of the box
+	 * @param height
+	 *            height of the box
+	 * @return the pixels of the box
+	 * @throws ServerError
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static ArrayDataAccess<?> readRegion(
+			final RawPixelsStorePrx store, final String typeString,
+			final int z, final int c, final int t, final int x, final int y,
+			final int width, final int height) throws ServerError {
+		final int[] tileSize = store.getTileSize();
+		final int tileW = tileSize[0];
+		final int tileH = tileSize[1];
+
+		if ((width <= tileW) && (height <= tileH)) {
+			return OmeroKnimeConversionHelper.makeDataAccessArray(typeString,
+					width, height, store.getTile(z, c, t, x, y, width, height));
+		}
+
+		ArrayDataAccess plane = null;
+		for (int ty = 0; ty < height; ty += tileH) {
+			for (int tx = 0; tx < width; tx += tileW) {
+				final int w = Math.min(tileW, width - tx);
+				final int h = Math.min(tileH, height - ty);
+				final ArrayDataAccess<?> tile = OmeroKnimeConversionHelper
+						.makeDataAccessArray(typeString, w, h,
+								store.getTile(z, c, t, x + tx, y + ty, w, h));
+				if (plane == null) {
+					plane = (ArrayDataAccess) tile.createArray(width * height);
+				}
+				final Object src = tile.getCurrentStorageArray();
+				final Object dst = plane.getCurrentStorageArray();
+				for (int row = 0; row < h; row++) {
+					System.arraycopy(src, row * w, dst, ((ty + row) * width)
+							+ tx, w);
+				}
+			}
+		}
+		return plane;
+	}
+
+	/**
+	 * reads a box of a full resolution plane tile by tile and keeps only every
+	 * step-th pixel in X and Y, so memory scales with the downsampled box.
+	 *
+	 * @param store
+	 *            a store reading the pixels of the image
+	 * @param typeString
+	 *            string identifier of a image type
+	 * @param z
+	 *            Z index of the plane
+	 * @param c
+	 *            channel of the plane
+	 * @param t
+	 *            time point of the plane
+	 * @param x
+	 *            left border of the box
+	 * @param y
+	 *            top border of the box
+	 * @param width
+	 *            width of the box
+	 * @param height
+	 *            height of the box
+	 * @param step
+	 *            the subsampling step
+	 * @return the subsampled pixels of the box
+	 * @throws ServerError
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static ArrayDataAccess<?> readDecimated(
+			final RawPixelsStorePrx store, final String typeString,
+			final int z, final int c, final int t, final int x, final int y,
+			final int width, final int height, final int step)
+			throws ServerError {
+		final int[] tileSize = store.getTileSize();
+		// whole steps per tile keep the sampling grid aligned
+		final int tileW = Math.max(1, tileSize[0] / step) * step;
+		final int tileH = Math.max(1, tileSize[1] / step) * step;
+		final int outWidth = ((width + step) - 1) / step;
+		final int outHeight = ((height + step) - 1) / step;
+
+		ArrayDataAccess plane = null;
+		for (int ty = 0; ty < height; ty += tileH) {
+			for (int tx = 0; tx < width; tx += tileW) {
+				final int w = Math.min(tileW, width - tx);
+				final int h = Math.min(tileH, height - ty);
+				final ArrayDataAccess<?> tile = OmeroKnimeConversionHelper
+						.makeDataAccessArray(typeString, w, h,
+								store.getTile(z, c, t, x + tx, y + ty, w, h));
+				if (plane == null) {
+					plane = (ArrayDataAccess) tile.createArray(outWidth
+							* outHeight);
+				}
+				final Object src = tile.getCurrentStorageArray();
+				final Object dst = plane.getCurrentStorageArray();
+				// tx is a multiple of step
+				final int count = ((w + step) - 1) / step;
+				for (int row = 0; row < h; row += step) {
+					copyEvery(src, row * w, step, dst, (((ty + row) / step)
+							* outWidth) + (tx / step), count);
+				}
+			}
+		}
+		return plane;
+	}
+
+	/**
+	 * copies every step-th element of the source array into consecutive
+	 * elements of the destination array, with a typed loop per primitive
+	 * array type.
+	 *
+	 * @param src
+	 *            the source array
+	 * @param srcPos
+	 *            index of the first element copied
+	 * @param step
+	 *            distance of the copied source elements
+	 * @param dst
+	 *            the destination array of the same type
+	 * @param dstPos
+	 *            index the first element is copied to
+	 * @param count
+	 *            number of elements to copy
+	 */
+	private static void copyEvery(final Object src, final int srcPos,
+			final int step, final Object dst, final int dstPos,
+			final int count) {
+		if (src instanceof byte[]) {
+			final byte[] s = (byte[]) src;
+			final byte[] d = (byte[]) dst;
+			for (int i = 0; i < count; i++) {
+				d[dstPos + i] = s[srcPos + (i * step)];
+			}
+		} else if (src instanceof short[]) {
+			final short[] s = (short[]) src;
+			final short[] d = (short[]) dst;
+			for (int i = 0; i < count; i++) {
+				d[dstPos + i] = s[srcPos + (i * step)];
+			}
+		} else if (src instanceof int[]) {
+			final int[] s = (int[]) src;
+			final int[] d = (int[]) dst;
+			for (int i = 0; i < count; i++) {
+				d[dstPos + i] = s[srcPos + (i * step)];
+			}
+		} else if (src instanceof long[]) {
+			final long[] s = (long[]) src;
+			final long[] d = (long[]) dst;
+			for (int i = 0; i < count; i++) {
+				d[dstPos + i] = s[srcPos + (i * step)];
+			}
+		} else if (src instanceof float[]) {
+			final float[] s = (float[]) src;
+			final float[] d = (float[]) dst;
+			for (int i = 0; i < count; i++) {
+				d[dstPos + i] = s[srcPos + (i * step)];
+			}
+		} else if (src instanceof double[]) {
+			final double[] s = (double[]) src;
+			final double[] d = (double[]) dst;
+			for (int i = 0; i < count; i++) {
+				d[dstPos + i] = s[srcPos + (i * step)];
+			}
+		} else {
+			for (int i = 0; i < count; i++) {
+				System.arraycopy(src, srcPos + (i * step), dst, dstPos + i, 1);
+			}
+		}
+	}
+
+	/**
+	 * rethrows the cause of a failed plane request.
+	 *
+	 * @param e
+	 *            the exception thrown by the plane request
+	 * @throws DSOutOfServiceException
+	 * @throws DSAccessException
+	 * @throws FSAccessException
+	 * @throws ServerError
+	 */
+	private static void rethrowPlaneFailure(final ExecutionException e)
+			throws DSOutOfServiceException, DSAccessException,
+			FSAccessException, ServerError {
+		final Throwable cause = e.getCause();
+		if (cause instanceof DSOutOfServiceException) {
+			throw (DSOutOfServiceException) cause;
+		} else if (cause instanceof DSAccessException) {
+			throw (DSAccessException) cause;
+		} else if (cause instanceof FSAccessException) {
+			throw (FSAccessException) cause;
+		} else if (cause instanceof ServerError) {
+			throw (ServerError) cause;
+		} else if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		} else if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		throw new IllegalStateException(cause);
+	}
+
+	/**
+	 * @param nThreads
+	 *            number of concurrent plane requests
+	 * @return a pool of daemon threads that fetch and decode planes
+	 */
+	private static ExecutorService createPlaneFetchPool(final int nThreads) {
+		final AtomicInteger count = new AtomicInteger();
+		return Executors.newFixedThreadPool(nThreads, r -> {
+			final Thread t = new Thread(r, "OMERO plane fetcher "
+					+ count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
 	}
 
 	/**
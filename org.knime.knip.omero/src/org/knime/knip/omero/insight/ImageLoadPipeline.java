@@ -0,0 +1,318 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.omero.insight;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imagej.ImgPlus;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * loads images ahead of their consumer. Up to a fixed number of images are
+ * fetched (and decoded, see {@link HeadlessImageLoader}) in the background
+ * while the consumer processes the images that are already available. Results
+ * are handed out in submission order, so the consumer sees a deterministic
+ * sequence regardless of which image finishes loading first.
+ */
+public class ImageLoadPipeline implements AutoCloseable {
+
+	/** the outcome of loading a single image. */
+	public static final class Result {
+
+		private final long m_imageID;
+
+		private final long m_pixelID;
+
+		@SuppressWarnings("rawtypes")
+		private final ImgPlus<RealType> m_img;
+
+		private final Throwable m_failure;
+
+		@SuppressWarnings("rawtypes")
+		private Result(final long imageID, final long pixelID,
+				final ImgPlus<RealType> img, final Throwable failure) {
+			m_imageID = imageID;
+			m_pixelID = pixelID;
+			m_img = img;
+			m_failure = failure;
+		}
+
+		/**
+		 * @return the OMERO image ID
+		 */
+		public long getImageID() {
+			return m_imageID;
+		}
+
+		/**
+		 * @return the OMERO pixel ID
+		 */
+		public long getPixelID() {
+			return m_pixelID;
+		}
+
+		/**
+		 * @return the loaded image or <code>null</code> if loading failed
+		 */
+		@SuppressWarnings("rawtypes")
+		public ImgPlus<RealType> getImage() {
+			return m_img;
+		}
+
+		/**
+		 * @return the reason why loading failed or <code>null</code>
+		 */
+		public Throwable getFailure() {
+			return m_failure;
+		}
+	}
+
+	/** an image that has been submitted but not yet handed out. */
+	private static final class Pending {
+
+		private final long m_imageID;
+
+		private final long m_pixelID;
+
+		private final long m_bytes;
+
+		@SuppressWarnings("rawtypes")
+		private final Future<ImgPlus<RealType>> m_future;
+
+		@SuppressWarnings("rawtypes")
+		private Pending(final long imageID, final long pixelID,
+				final long bytes, final Future<ImgPlus<RealType>> future) {
+			m_imageID = imageID;
+			m_pixelID = pixelID;
+			m_bytes = bytes;
+			m_future = future;
+		}
+	}
+
+	/** loads the images, must be connected. */
+	private final HeadlessImageLoader m_loader;
+
+	/** maximal number of images that are loaded ahead. */
+	private final int m_capacity;
+
+	/** maximal estimated size of the images that are loaded ahead. */
+	private final long m_memoryBudget;
+
+	/** estimated size of the submitted images. */
+	private long m_inFlightBytes;
+
+	/** runs one image load per thread. */
+	private final ExecutorService m_executor;
+
+	/** submitted images in submission order. */
+	private final Queue<Pending> m_pending;
+
+	/**
+	 * @param loader
+	 *            a connected loader
+	 * @param capacity
+	 *            maximal number of images that are loaded ahead of the
+	 *            consumer, at least 1
+	 */
+	public ImageLoadPipeline(final HeadlessImageLoader loader,
+			final int capacity) {
+		this(loader, capacity, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param loader
+	 *            a connected loader
+	 * @param capacity
+	 *            maximal number of images that are loaded ahead of the
+	 *            consumer, at least 1
+	 * @param memoryBudget
+	 *            maximal estimated size in bytes of the images that are loaded
+	 *            ahead. A single image is always accepted, even if it exceeds
+	 *            the budget.
+	 */
+	public ImageLoadPipeline(final HeadlessImageLoader loader,
+			final int capacity, final long memoryBudget) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException(
+					"at least one image must be loaded ahead");
+		}
+		m_loader = loader;
+		m_capacity = capacity;
+		m_memoryBudget = memoryBudget;
+		m_pending = new ArrayDeque<>(capacity);
+
+		final AtomicInteger count = new AtomicInteger();
+		m_executor = Executors.newFixedThreadPool(capacity, r -> {
+			final Thread t = new Thread(r, "OMERO image loader "
+					+ count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * @return true if no further image can be submitted before the next result
+	 *         has been taken
+	 */
+	public boolean isFull() {
+		return m_pending.size() >= m_capacity;
+	}
+
+	/**
+	 * @param bytes
+	 *            estimated size of the next image
+	 * @return true if the image can be submitted without exceeding the
+	 *         capacity or the memory budget
+	 */
+	public boolean canSubmit(final long bytes) {
+		return !isFull()
+				&& (m_pending.isEmpty() || ((m_inFlightBytes + bytes) <= m_memoryBudget));
+	}
+
+	/**
+	 * @return true if all submitted images have been handed out
+	 */
+	public boolean isEmpty() {
+		return m_pending.isEmpty();
+	}
+
+	/**
+	 * starts loading an image in the background.
+	 *
+	 * @param imageID
+	 *            the OMERO image ID
+	 * @param pixelID
+	 *            the OMERO pixel ID
+	 * @throws IllegalStateException
+	 *             if the pipeline is full
+	 */
+	public void submit(final long imageID, final long pixelID) {
+		submit(imageID, pixelID, 0);
+	}
+
+	/**
+	 * starts loading an image in the background and accounts its size
+	 * against the memory budget until it is handed out.
+	 *
+	 * @param imageID
+	 *            the OMERO image ID
+	 * @param pixelID
+	 *            the OMERO pixel ID
+	 * @param bytes
+	 *            estimated size of the image
+	 * @throws IllegalStateException
+	 *             if the pipeline is full
+	 */
+	public void submit(final long imageID, final long pixelID,
+			final long bytes) {
+		if (isFull()) {
+			throw new IllegalStateException("pipeline is full");
+		}
+		m_inFlightBytes += bytes;
+		m_pending.add(new Pending(imageID, pixelID, bytes, m_executor
+				.submit(() -> m_loader.getImage(imageID, pixelID))));
+	}
+
+	/**
+	 * waits for the earliest submitted image that has not yet been handed out.
+	 *
+	 * @param timeout
+	 *            the maximum time to wait
+	 * @param unit
+	 *            the time unit of the timeout argument
+	 * @return the result or <code>null</code> if the image is not loaded
+	 *         within the given time
+	 * @throws InterruptedException
+	 *             if the current thread was interrupted while waiting
+	 * @throws IllegalStateException
+	 *             if the pipeline is empty
+	 */
+	@SuppressWarnings("rawtypes")
+	public Result poll(final long timeout, final TimeUnit unit)
+			throws InterruptedException {
+		final Pending head = m_pending.peek();
+		if (head == null) {
+			throw new IllegalStateException("pipeline is empty");
+		}
+		ImgPlus<RealType> img = null;
+		Throwable failure = null;
+		try {
+			img = head.m_future.get(timeout, unit);
+		} catch (final TimeoutException e) {
+			return null;
+		} catch (final ExecutionException e) {
+			failure = e.getCause();
+		}
+		m_pending.remove();
+		m_inFlightBytes -= head.m_bytes;
+		return new Result(head.m_imageID, head.m_pixelID, img, failure);
+	}
+
+	/**
+	 * cancels all images that have not been handed out and stops the
+	 * background threads.
+	 */
+	@Override
+	public void close() {
+		for (final Pending p : m_pending) {
+			p.m_future.cancel(true);
+		}
+		m_pending.clear();
+		m_inFlightBytes = 0;
+		m_executor.shutdownNow();
+	}
+}
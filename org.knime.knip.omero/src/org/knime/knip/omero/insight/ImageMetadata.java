@@ -0,0 +1,307 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.omero.insight;
+
+import java.util.Arrays;
+
+import omero.gateway.model.PixelsData;
+
+/**
+ * compact description of a batch of OMERO images, resolved once per run. For
+ * every pixel ID the owning image ID, the length of the 5 OMERO dimensions,
+ * the pixel type and the time of the last update are held in flat primitive
+ * arrays that are sorted by pixel ID, so a lookup is a binary search and no
+ * objects are kept per image.
+ */
+public class ImageMetadata {
+
+	/** number of OMERO dimensions (X,Y,Z,T,C) stored per image. */
+	private static final int DIMS = 5;
+
+	/** resolved pixel IDs in ascending order. */
+	private long[] m_pixelIDs;
+
+	/** image IDs, parallel to {@link #m_pixelIDs}. */
+	private long[] m_imageIDs;
+
+	/** {image}{X,Y,Z,T,C} flattened, parallel to {@link #m_pixelIDs}. */
+	private int[] m_dimLengths;
+
+	/** pixel types, parallel to {@link #m_pixelIDs}. */
+	private String[] m_types;
+
+	/** update times in ms, -1 if unknown, parallel to {@link #m_pixelIDs}. */
+	private long[] m_updateTimes;
+
+	/** indices into the parallel arrays, ordered by image ID. */
+	private int[] m_byImageID;
+
+	/** number of resolved images. */
+	private int m_size;
+
+	/**
+	 * @param capacity
+	 *            expected number of images, the arrays grow if more are added
+	 */
+	ImageMetadata(final int capacity) {
+		m_pixelIDs = new long[capacity];
+		m_imageIDs = new long[capacity];
+		m_dimLengths = new int[capacity * DIMS];
+		m_types = new String[capacity];
+		m_updateTimes = new long[capacity];
+	}
+
+	/**
+	 * adds the metadata of one image. Once all images are added
+	 * {@link #seal()} has to be called before the first lookup.
+	 */
+	void add(final long pixelID, final long imageID, final int sizeX,
+			final int sizeY, final int sizeZ, final int sizeT,
+			final int sizeC, final String type, final long updateTime) {
+		if (m_size == m_pixelIDs.length) {
+			// e.g. an image with several pixels sets
+			final int capacity = Math.max(16, m_size * 2);
+			m_pixelIDs = Arrays.copyOf(m_pixelIDs, capacity);
+			m_imageIDs = Arrays.copyOf(m_imageIDs, capacity);
+			m_dimLengths = Arrays.copyOf(m_dimLengths, capacity * DIMS);
+			m_types = Arrays.copyOf(m_types, capacity);
+			m_updateTimes = Arrays.copyOf(m_updateTimes, capacity);
+		}
+		final int i = m_size++;
+		m_pixelIDs[i] = pixelID;
+		m_imageIDs[i] = imageID;
+		m_dimLengths[i * DIMS] = sizeX;
+		m_dimLengths[(i * DIMS) + 1] = sizeY;
+		m_dimLengths[(i * DIMS) + 2] = sizeZ;
+		m_dimLengths[(i * DIMS) + 3] = sizeT;
+		m_dimLengths[(i * DIMS) + 4] = sizeC;
+		// few distinct types, share the instances
+		m_types[i] = type == null ? null : type.intern();
+		m_updateTimes[i] = updateTime;
+	}
+
+	/**
+	 * sorts the added entries by pixel ID and indexes them by image ID.
+	 */
+	void seal() {
+		final Integer[] order = new Integer[m_size];
+		for (int i = 0; i < m_size; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Long.compare(m_pixelIDs[a],
+				m_pixelIDs[b]));
+
+		final long[] pixelIDs = Arrays.copyOf(m_pixelIDs, m_size);
+		final long[] imageIDs = Arrays.copyOf(m_imageIDs, m_size);
+		final int[] dimLengths = Arrays.copyOf(m_dimLengths, m_size * DIMS);
+		final String[] types = Arrays.copyOf(m_types, m_size);
+		final long[] updateTimes = Arrays.copyOf(m_updateTimes, m_size);
+		for (int i = 0; i < m_size; i++) {
+			final int from = order[i];
+			m_pixelIDs[i] = pixelIDs[from];
+			m_imageIDs[i] = imageIDs[from];
+			System.arraycopy(dimLengths, from * DIMS, m_dimLengths, i * DIMS,
+					DIMS);
+			m_types[i] = types[from];
+			m_updateTimes[i] = updateTimes[from];
+		}
+
+		for (int i = 0; i < m_size; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Long.compare(m_imageIDs[a],
+				m_imageIDs[b]));
+		m_byImageID = new int[m_size];
+		for (int i = 0; i < m_size; i++) {
+			m_byImageID[i] = order[i];
+		}
+	}
+
+	/**
+	 * @param pixelID
+	 *            an OMERO pixel ID
+	 * @return true if the metadata of the pixel ID has been resolved
+	 */
+	public boolean contains(final long pixelID) {
+		return indexOf(pixelID) >= 0;
+	}
+
+	/**
+	 * @param pixelID
+	 *            a resolved OMERO pixel ID
+	 * @return the ID of the image the pixels belong to
+	 */
+	public long getImageID(final long pixelID) {
+		return m_imageIDs[checkedIndexOf(pixelID)];
+	}
+
+	/**
+	 * @param pixelID
+	 *            a resolved OMERO pixel ID
+	 * @return {X,Y,Z,T,C}
+	 */
+	public int[] getDimensions(final long pixelID) {
+		final int i = checkedIndexOf(pixelID) * DIMS;
+		return Arrays.copyOfRange(m_dimLengths, i, i + DIMS);
+	}
+
+	/**
+	 * @param pixelID
+	 *            a resolved OMERO pixel ID
+	 * @return string identifier representing the image type
+	 *         {@link org.knime.knip.omero.omerojava.PixelTypes PixelTypes}
+	 */
+	public String getImageType(final long pixelID) {
+		return m_types[checkedIndexOf(pixelID)];
+	}
+
+	/**
+	 * @param pixelID
+	 *            a resolved OMERO pixel ID
+	 * @return the time the image or its pixels were last updated in ms since
+	 *         the epoch, -1 if unknown
+	 */
+	public long getUpdateTime(final long pixelID) {
+		return m_updateTimes[checkedIndexOf(pixelID)];
+	}
+
+	/**
+	 * @param imageID
+	 *            an OMERO image ID
+	 * @return true if the metadata of the image has been resolved
+	 */
+	public boolean containsImage(final long imageID) {
+		return indexOfImage(imageID) >= 0;
+	}
+
+	/**
+	 * @param imageID
+	 *            a resolved OMERO image ID
+	 * @return the pixel ID of the image
+	 */
+	public long getPixelID(final long imageID) {
+		final int i = indexOfImage(imageID);
+		if (i < 0) {
+			throw new IllegalArgumentException("no metadata for image ID "
+					+ imageID);
+		}
+		return m_pixelIDs[i];
+	}
+
+	/**
+	 * @param pixelID
+	 *            a resolved OMERO pixel ID
+	 * @return the number of bytes needed to hold the loaded image
+	 */
+	public long getSizeInBytes(final long pixelID) {
+		final int i = checkedIndexOf(pixelID);
+		long size = bytesPerPixel(m_types[i]);
+		for (int d = 0; d < DIMS; d++) {
+			size *= m_dimLengths[(i * DIMS) + d];
+		}
+		return size;
+	}
+
+	/**
+	 * @param type
+	 *            string identifier of an image type
+	 * @return the size of one pixel of the type once loaded
+	 */
+	static int bytesPerPixel(final String type) {
+		if (PixelsData.INT8_TYPE.equals(type)
+				|| PixelsData.UINT8_TYPE.equals(type)) {
+			return 1;
+		} else if (PixelsData.INT16_TYPE.equals(type)
+				|| PixelsData.UINT16_TYPE.equals(type)) {
+			return 2;
+		} else if (PixelsData.INT32_TYPE.equals(type)
+				|| PixelsData.UINT32_TYPE.equals(type)
+				|| PixelsData.FLOAT_TYPE.equals(type)) {
+			return 4;
+		}
+		return 8;
+	}
+
+	/**
+	 * @return the number of resolved images
+	 */
+	public int size() {
+		return m_size;
+	}
+
+	private int indexOf(final long pixelID) {
+		return Arrays.binarySearch(m_pixelIDs, 0, m_size, pixelID);
+	}
+
+	private int indexOfImage(final long imageID) {
+		int low = 0;
+		int high = m_size - 1;
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			final long midID = m_imageIDs[m_byImageID[mid]];
+			if (midID < imageID) {
+				low = mid + 1;
+			} else if (midID > imageID) {
+				high = mid - 1;
+			} else {
+				return m_byImageID[mid];
+			}
+		}
+		return -1;
+	}
+
+	private int checkedIndexOf(final long pixelID) {
+		final int i = indexOf(pixelID);
+		if (i < 0) {
+			throw new IllegalArgumentException("no metadata for pixel ID "
+					+ pixelID);
+		}
+		return i;
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.omero.insight;
+
+/**
+ * the part of an OMERO image that should be loaded: an XY bounding box and a
+ * range of Z, C and T indices. A width or height of 0 extends the box to the
+ * border of the image.
+ */
+public final class ImageRegion {
+
+	/** the whole image. */
+	public static final ImageRegion ALL = new ImageRegion(0, 0, 0, 0,
+			IndexRange.ALL, IndexRange.ALL, IndexRange.ALL);
+
+	private final int m_x;
+
+	private final int m_y;
+
+	private final int m_width;
+
+	private final int m_height;
+
+	private final IndexRange m_z;
+
+	private final IndexRange m_c;
+
+	private final IndexRange m_t;
+
+	/**
+	 * @param x
+	 *            left border of the box
+	 * @param y
+	 *            top border of the box
+	 * @param width
+	 *            width of the box, 0 for the remaining width
+	 * @param height
+	 *            height of the box, 0 for the remaining height
+	 * @param z
+	 *            the selected Z indices
+	 * @param c
+	 *            the selected channels
+	 * @param t
+	 *            the selected time points
+	 */
+	public ImageRegion(final int x, final int y, final int width,
+			final int height, final IndexRange z, final IndexRange c,
+			final IndexRange t) {
+		if ((x < 0) || (y < 0) || (width < 0) || (height < 0)) {
+			throw new IllegalArgumentException("invalid bounding box");
+		}
+		m_x = x;
+		m_y = y;
+		m_width = width;
+		m_height = height;
+		m_z = z;
+		m_c = c;
+		m_t = t;
+	}
+
+	/**
+	 * @param sizeX
+	 *            width of the image
+	 * @param sizeY
+	 *            height of the image
+	 * @return true if the box covers the whole XY plane
+	 */
+	public boolean isFullPlane(final int sizeX, final int sizeY) {
+		return (m_x == 0) && (m_y == 0) && (getWidth(sizeX) == sizeX)
+				&& (getHeight(sizeY) == sizeY);
+	}
+
+	/**
+	 * @return left border of the box
+	 */
+	public int getX() {
+		return m_x;
+	}
+
+	/**
+	 * @return top border of the box
+	 */
+	public int getY() {
+		return m_y;
+	}
+
+	/**
+	 * @param sizeX
+	 *            width of the image
+	 * @return width of the box within the image
+	 */
+	public int getWidth(final int sizeX) {
+		final int available = Math.max(0, sizeX - m_x);
+		return m_width == 0 ? available : Math.min(m_width, available);
+	}
+
+	/**
+	 * @param sizeY
+	 *            height of the image
+	 * @return height of the box within the image
+	 */
+	public int getHeight(final int sizeY) {
+		final int available = Math.max(0, sizeY - m_y);
+		return m_height == 0 ? available : Math.min(m_height, available);
+	}
+
+	/**
+	 * @return the selected Z indices
+	 */
+	public IndexRange getZ() {
+		return m_z;
+	}
+
+	/**
+	 * @return the selected channels
+	 */
+	public IndexRange getC() {
+		return m_c;
+	}
+
+	/**
+	 * @return the selected time points
+	 */
+	public IndexRange getT() {
+		return m_t;
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.omero.insight;
+
+/**
+ * a range of 0 based indices along one OMERO dimension (Z, C or T). Written
+ * as <code>first-last</code> or as a single index, an empty string selects
+ * the whole dimension. A <code>:step</code> suffix selects only every
+ * step-th index of the range, e.g. <code>0-:5</code> or <code>:5</code>.
+ */
+public final class IndexRange {
+
+	/** selects all indices of a dimension. */
+	public static final IndexRange ALL = new IndexRange(0, -1, 1);
+
+	private final int m_first;
+
+	/** the last index, -1 for the end of the dimension. */
+	private final int m_last;
+
+	/** distance between two selected indices. */
+	private final int m_step;
+
+	/**
+	 * @param first
+	 *            the first selected index
+	 * @param last
+	 *            the last selected index, -1 for the end of the dimension
+	 */
+	public IndexRange(final int first, final int last) {
+		this(first, last, 1);
+	}
+
+	/**
+	 * @param first
+	 *            the first selected index
+	 * @param last
+	 *            the last index that may be selected, -1 for the end of the
+	 *            dimension
+	 * @param step
+	 *            distance between two selected indices
+	 */
+	public IndexRange(final int first, final int last, final int step) {
+		if ((first < 0) || ((last >= 0) && (last < first)) || (step < 1)) {
+			throw new IllegalArgumentException("invalid range " + first + "-"
+					+ last + ":" + step);
+		}
+		m_first = first;
+		m_last = last;
+		m_step = step;
+	}
+
+	/**
+	 * @param text
+	 *            the range as <code>first-last</code>, a single index or an
+	 *            empty string for all indices, optionally followed by
+	 *            <code>:step</code>
+	 * @return the parsed range
+	 * @throws IllegalArgumentException
+	 *             if the text is not a valid range
+	 */
+	public static IndexRange parse(final String text) {
+		String range = text.trim();
+		try {
+			int step = 1;
+			final int colon = range.indexOf(':');
+			if (colon >= 0) {
+				step = Integer.parseInt(range.substring(colon + 1).trim());
+				range = range.substring(0, colon).trim();
+			}
+			if (range.isEmpty()) {
+				return step == 1 ? ALL : new IndexRange(0, -1, step);
+			}
+			final int dash = range.indexOf('-');
+			if (dash < 0) {
+				final int index = Integer.parseInt(range);
+				return new IndexRange(index, index, step);
+			}
+			final int first = Integer.parseInt(range.substring(0, dash)
+					.trim());
+			final String last = range.substring(dash + 1).trim();
+			return new IndexRange(first, last.isEmpty() ? -1 : Integer
+					.parseInt(last), step);
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException("invalid range \"" + text
+					+ "\", expected first-last:step", e);
+		}
+	}
+
+	/**
+	 * @return true if the range selects every index of a dimension
+	 */
+	public boolean isAll() {
+		return (m_first == 0) && (m_last < 0) && (m_step == 1);
+	}
+
+	/**
+	 * @return distance between two selected indices
+	 */
+	public int getStep() {
+		return m_step;
+	}
+
+	/**
+	 * @param size
+	 *            the length of the dimension
+	 * @return the number of selected indices within the dimension
+	 */
+	public int count(final int size) {
+		final int last = m_last < 0 ? size - 1 : Math.min(m_last, size - 1);
+		return last < m_first ? 0 : ((last - m_first) / m_step) + 1;
+	}
+
+	/**
+	 * @param i
+	 *            the position within the selection
+	 * @return the index in the source dimension
+	 */
+	public int sourceIndex(final int i) {
+		return m_first + (i * m_step);
+	}
+
+	@Override
+	public String toString() {
+		if (isAll()) {
+			return "";
+		}
+		final String range = m_first == m_last ? Integer.toString(m_first)
+				: m_first + "-" + (m_last < 0 ? "" : Integer.toString(m_last));
+		return m_step == 1 ? range : range + ":" + m_step;
+	}
+}
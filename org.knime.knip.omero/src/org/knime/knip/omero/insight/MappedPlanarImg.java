@@ -0,0 +1,380 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.omero.insight;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.function.Function;
+
+import org.knime.core.node.KNIMEConstants;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+
+/**
+ * a {@link PlanarImg} whose planes live in a memory-mapped temporary file
+ * instead of the Java heap. The operating system pages the planes in on
+ * access and writes them back under memory pressure, so images larger than
+ * the heap can be assembled and read.
+ *
+ * Setting a plane copies its pixels into the file, the given plane is not
+ * referenced afterwards. The plane accesses extend the array accesses of the
+ * pixel types and read and write single pixels directly in the file, so
+ * cursors and random accesses work as on any {@link PlanarImg}.
+ *
+ * A mapped plane has no backing array: each call of
+ * {@link ArrayDataAccess#getCurrentStorageArray()} returns a new heap copy
+ * of the plane, e.g. to serialize it. Changes made to that copy are not
+ * written back, and the copy costs a whole plane of heap. Code writing
+ * pixels has to use {@link #setPlane(int, ArrayDataAccess)} or the value
+ * setters of the accesses, which the pixel types use, and should not hold
+ * on to storage arrays.
+ *
+ * @param <T>
+ *            the pixel type
+ * @param <A>
+ *            the plane access type
+ */
+public class MappedPlanarImg<T extends NativeType<T>, A extends ArrayDataAccess<A>>
+		extends PlanarImg<T, A> {
+
+	/** a plane access backed by a mapped buffer. */
+	interface MappedAccess {
+
+		/**
+		 * @param array
+		 *            a primitive array of the plane type to copy into the
+		 *            mapped plane
+		 */
+		void copyFrom(Object array);
+	}
+
+	/**
+	 * @param dim
+	 *            dimensions of the image
+	 * @param entitiesPerPixel
+	 *            entities per pixel of the pixel type
+	 * @param bytesPerEntity
+	 *            size of one entity in bytes
+	 * @param wrap
+	 *            creates the access of a mapped plane
+	 * @throws UncheckedIOException
+	 *             if the file cannot be created or mapped
+	 */
+	MappedPlanarImg(final long[] dim, final Fraction entitiesPerPixel,
+			final int bytesPerEntity, final Function<ByteBuffer, A> wrap) {
+		super(dim, entitiesPerPixel);
+
+		final long planeBytes = entitiesPerPixel.mulCeil(dim.length < 2 ? dim[0]
+				: dim[0] * dim[1]) * bytesPerEntity;
+		if (planeBytes > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("planes of " + planeBytes
+					+ " bytes can not be mapped");
+		}
+
+		try {
+			final File file = File.createTempFile("omero-planes", ".raw",
+					new File(KNIMEConstants.getKNIMETempDir()));
+			try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+				raf.setLength(planeBytes * getNumSlices());
+				final FileChannel channel = raf.getChannel();
+				for (int no = 0; no < getNumSlices(); no++) {
+					final ByteBuffer buffer = channel.map(
+							FileChannel.MapMode.READ_WRITE, no * planeBytes,
+							planeBytes).order(ByteOrder.nativeOrder());
+					super.setPlane(no, wrap.apply(buffer));
+				}
+			} finally {
+				// the mappings stay valid, the file vanishes with them where
+				// the platform allows it
+				if (!file.delete()) {
+					file.deleteOnExit();
+				}
+			}
+		} catch (final IOException e) {
+			throw new UncheckedIOException(
+					"could not create the memory-mapped image", e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Copies the pixels of the plane into the mapped file.
+	 */
+	@Override
+	public void setPlane(final int no, final A plane) {
+		final A mapped = getPlane(no);
+		if (plane != mapped) {
+			((MappedAccess) mapped).copyFrom(plane.getCurrentStorageArray());
+		}
+	}
+
+	/** 8 bit plane. */
+	static final class MappedByteArray extends ByteArray implements
+			MappedAccess {
+
+		private final ByteBuffer m_buffer;
+
+		MappedByteArray(final ByteBuffer buffer) {
+			super(new byte[0]);
+			m_buffer = buffer;
+		}
+
+		@Override
+		public byte getValue(final int index) {
+			return m_buffer.get(index);
+		}
+
+		@Override
+		public void setValue(final int index, final byte value) {
+			m_buffer.put(index, value);
+		}
+
+		/**
+		 * @return a copy of the plane, changes are not written back
+		 */
+		@Override
+		public byte[] getCurrentStorageArray() {
+			final byte[] copy = new byte[m_buffer.capacity()];
+			((ByteBuffer) m_buffer.duplicate().clear()).get(copy);
+			return copy;
+		}
+
+		public int getArrayLength() {
+			return m_buffer.capacity();
+		}
+
+		@Override
+		public void copyFrom(final Object array) {
+			((ByteBuffer) m_buffer.duplicate().clear()).put((byte[]) array);
+		}
+	}
+
+	/** 16 bit plane. */
+	static final class MappedShortArray extends ShortArray implements
+			MappedAccess {
+
+		private final ShortBuffer m_buffer;
+
+		MappedShortArray(final ByteBuffer buffer) {
+			super(new short[0]);
+			m_buffer = buffer.asShortBuffer();
+		}
+
+		@Override
+		public short getValue(final int index) {
+			return m_buffer.get(index);
+		}
+
+		@Override
+		public void setValue(final int index, final short value) {
+			m_buffer.put(index, value);
+		}
+
+		/**
+		 * @return a copy of the plane, changes are not written back
+		 */
+		@Override
+		public short[] getCurrentStorageArray() {
+			final short[] copy = new short[m_buffer.capacity()];
+			((ShortBuffer) m_buffer.duplicate().clear()).get(copy);
+			return copy;
+		}
+
+		public int getArrayLength() {
+			return m_buffer.capacity();
+		}
+
+		@Override
+		public void copyFrom(final Object array) {
+			((ShortBuffer) m_buffer.duplicate().clear()).put((short[]) array);
+		}
+	}
+
+	/** 32 bit integer plane. */
+	static final class MappedIntArray extends IntArray implements
+			MappedAccess {
+
+		private final IntBuffer m_buffer;
+
+		MappedIntArray(final ByteBuffer buffer) {
+			super(new int[0]);
+			m_buffer = buffer.asIntBuffer();
+		}
+
+		@Override
+		public int getValue(final int index) {
+			return m_buffer.get(index);
+		}
+
+		@Override
+		public void setValue(final int index, final int value) {
+			m_buffer.put(index, value);
+		}
+
+		/**
+		 * @return a copy of the plane, changes are not written back
+		 */
+		@Override
+		public int[] getCurrentStorageArray() {
+			final int[] copy = new int[m_buffer.capacity()];
+			((IntBuffer) m_buffer.duplicate().clear()).get(copy);
+			return copy;
+		}
+
+		public int getArrayLength() {
+			return m_buffer.capacity();
+		}
+
+		@Override
+		public void copyFrom(final Object array) {
+			((IntBuffer) m_buffer.duplicate().clear()).put((int[]) array);
+		}
+	}
+
+	/** 32 bit floating point plane. */
+	static final class MappedFloatArray extends FloatArray implements
+			MappedAccess {
+
+		private final FloatBuffer m_buffer;
+
+		MappedFloatArray(final ByteBuffer buffer) {
+			super(new float[0]);
+			m_buffer = buffer.asFloatBuffer();
+		}
+
+		@Override
+		public float getValue(final int index) {
+			return m_buffer.get(index);
+		}
+
+		@Override
+		public void setValue(final int index, final float value) {
+			m_buffer.put(index, value);
+		}
+
+		/**
+		 * @return a copy of the plane, changes are not written back
+		 */
+		@Override
+		public float[] getCurrentStorageArray() {
+			final float[] copy = new float[m_buffer.capacity()];
+			((FloatBuffer) m_buffer.duplicate().clear()).get(copy);
+			return copy;
+		}
+
+		public int getArrayLength() {
+			return m_buffer.capacity();
+		}
+
+		@Override
+		public void copyFrom(final Object array) {
+			((FloatBuffer) m_buffer.duplicate().clear()).put((float[]) array);
+		}
+	}
+
+	/** 64 bit floating point plane. */
+	static final class MappedDoubleArray extends DoubleArray implements
+			MappedAccess {
+
+		private final DoubleBuffer m_buffer;
+
+		MappedDoubleArray(final ByteBuffer buffer) {
+			super(new double[0]);
+			m_buffer = buffer.asDoubleBuffer();
+		}
+
+		@Override
+		public double getValue(final int index) {
+			return m_buffer.get(index);
+		}
+
+		@Override
+		public void setValue(final int index, final double value) {
+			m_buffer.put(index, value);
+		}
+
+		/**
+		 * @return a copy of the plane, changes are not written back
+		 */
+		@Override
+		public double[] getCurrentStorageArray() {
+			final double[] copy = new double[m_buffer.capacity()];
+			((DoubleBuffer) m_buffer.duplicate().clear()).get(copy);
+			return copy;
+		}
+
+		public int getArrayLength() {
+			return m_buffer.capacity();
+		}
+
+		@Override
+		public void copyFrom(final Object array) {
+			((DoubleBuffer) m_buffer.duplicate().clear())
+					.put((double[]) array);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.omero.insight;
+
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+
+/**
+ * creates {@link MappedPlanarImg}s for the pixel types OMERO images are
+ * loaded as.
+ *
+ * @param <T>
+ *            the pixel type
+ */
+public class MappedPlanarImgFactory<T extends NativeType<T>> extends
+		PlanarImgFactory<T> {
+
+	@Override
+	public PlanarImg<T, ByteArray> createByteInstance(final long[] dimensions,
+			final Fraction entitiesPerPixel) {
+		return new MappedPlanarImg<T, ByteArray>(dimensions, entitiesPerPixel,
+				1, MappedPlanarImg.MappedByteArray::new);
+	}
+
+	@Override
+	public PlanarImg<T, ShortArray> createShortInstance(
+			final long[] dimensions, final Fraction entitiesPerPixel) {
+		return new MappedPlanarImg<T, ShortArray>(dimensions,
+				entitiesPerPixel, 2, MappedPlanarImg.MappedShortArray::new);
+	}
+
+	@Override
+	public PlanarImg<T, IntArray> createIntInstance(final long[] dimensions,
+			final Fraction entitiesPerPixel) {
+		return new MappedPlanarImg<T, IntArray>(dimensions, entitiesPerPixel,
+				4, MappedPlanarImg.MappedIntArray::new);
+	}
+
+	@Override
+	public PlanarImg<T, FloatArray> createFloatInstance(
+			final long[] dimensions, final Fraction entitiesPerPixel) {
+		return new MappedPlanarImg<T, FloatArray>(dimensions,
+				entitiesPerPixel, 4, MappedPlanarImg.MappedFloatArray::new);
+	}
+
+	@Override
+	public PlanarImg<T, DoubleArray> createDoubleInstance(
+			final long[] dimensions, final Fraction entitiesPerPixel) {
+		return new MappedPlanarImg<T, DoubleArray>(dimensions,
+				entitiesPerPixel, 8, MappedPlanarImg.MappedDoubleArray::new);
+	}
+}
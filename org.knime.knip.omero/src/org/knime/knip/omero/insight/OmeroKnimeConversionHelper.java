@@ -48,6 +48,7 @@
  */
 package org.knime.knip.omero.insight;
 
+import org.knime.knip.omero.omerojava.GatewayUtilsExcerpt;
 import org.knime.knip.omero.omerojava.Plane1D;
 
 import net.imagej.axis.Axes;
@@ -55,6 +56,7 @@ import net.imagej.axis.AxisType;
 import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
 import net.imglib2.img.basictypeaccess.array.ByteArray;
 import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
 import net.imglib2.img.basictypeaccess.array.IntArray;
 import net.imglib2.img.basictypeaccess.array.ShortArray;
 import net.imglib2.type.numeric.RealType;
@@ -65,6 +67,8 @@ import net.imglib2.type.numeric.integer.UnsignedByteType;
 import net.imglib2.type.numeric.integer.UnsignedIntType;
 import net.imglib2.type.numeric.integer.UnsignedShortType;
 import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import omero.ServerError;
 import omero.gateway.exception.DSAccessException;
 import omero.gateway.exception.DSOutOfServiceException;
 import omero.gateway.model.PixelsData;
@@ -115,8 +119,9 @@ public final class OmeroKnimeConversionHelper {
 			access = new ShortArray(p1d.getPixelsArrayAsShort());
 		} else if (typeString.equals(PixelsData.UINT32_TYPE)) {
 			access = new IntArray(p1d.getPixelsArrayAsInt());
-		} else if (typeString.equals(PixelsData.DOUBLE_TYPE)) { // FLOAT_TYPE ==
-																// DOUBLE_TYPE
+		} else if (typeString.equals(PixelsData.FLOAT_TYPE)) {
+			access = new FloatArray(p1d.getPixelsArrayAsFloat());
+		} else if (typeString.equals(PixelsData.DOUBLE_TYPE)) {
 			access = new DoubleArray(p1d.getPixelsArrayAsDouble());
 		} else {
 			throw new IllegalArgumentException(
@@ -125,6 +130,38 @@ public final class OmeroKnimeConversionHelper {
 		return access;
 	}
 
+	/**
+	 * Converts a raw OMERO plane into a data access array. For 8-bit types the
+	 * raw array already holds the pixels in the right layout and is adopted
+	 * without copying, i.e. the returned access is backed by
+	 * <code>rawPlane</code>. All other types are decoded in a single pass.
+	 *
+	 * @param typeString
+	 *            string identifier of a image type
+	 *            {@link org.knime.knip.omero.omerojava.PixelTypes PixelTypes}
+	 * @param sizeX
+	 *            size of the x dimension
+	 * @param sizeY
+	 *            size of the y dimension
+	 * @param rawPlane
+	 *            the raw bytes of the plane as returned by the server
+	 * @return a data access array of the correct data type
+	 * @throws ServerError
+	 */
+	@SuppressWarnings("rawtypes")
+	public static ArrayDataAccess makeDataAccessArray(final String typeString,
+			final int sizeX, final int sizeY, final byte[] rawPlane)
+			throws ServerError {
+		if ((typeString.equals(PixelsData.INT8_TYPE) || typeString
+				.equals(PixelsData.UINT8_TYPE))
+				&& (rawPlane.length == (sizeX * sizeY))) {
+			return new ByteArray(rawPlane);
+		}
+		return makeDataAccessArray(typeString,
+				GatewayUtilsExcerpt.getPlane1D(sizeX, sizeY, typeString,
+						rawPlane));
+	}
+
 	/**
 	 * Gives a ImgLib RealType for a given OMERO type string
 	 *
@@ -151,8 +188,9 @@ public final class OmeroKnimeConversionHelper {
 			type = new UnsignedShortType();
 		} else if (typeString.equals(PixelsData.UINT32_TYPE)) {
 			type = new UnsignedIntType();
-		} else if (typeString.equals(PixelsData.DOUBLE_TYPE)) { // FLOAT_TYPE ==
-																// DOUBLE_TYPE
+		} else if (typeString.equals(PixelsData.FLOAT_TYPE)) {
+			type = new FloatType();
+		} else if (typeString.equals(PixelsData.DOUBLE_TYPE)) {
 			type = new DoubleType();
 		} else {
 			throw new IllegalArgumentException(
@@ -0,0 +1,452 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.omero.insight;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.knime.core.node.NodeLogger;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+
+/**
+ * persistent cache of decoded planes on the local disk, so re-executing a
+ * reader does not download the same planes again. Every plane is stored in
+ * its own file holding a small header and the raw pixel array. The cache is
+ * capped by size, the least recently used planes are deleted first. Each
+ * entry records the update time of its image and is dropped once the image
+ * has been modified on the server.
+ *
+ * Caches are shared per directory, see {@link #getInstance(Path, long)}.
+ */
+public final class PlaneDiskCache {
+
+	private static final NodeLogger LOGGER = NodeLogger
+			.getLogger(PlaneDiskCache.class);
+
+	/** marks a plane file, "OPC1". */
+	private static final int MAGIC = 0x4F504331;
+
+	/** magic, update time, array type and array length. */
+	private static final int HEADER_SIZE = 4 + 8 + 1 + 4;
+
+	private static final String SUFFIX = ".plane";
+
+	private static final byte TYPE_BYTE = 1;
+
+	private static final byte TYPE_SHORT = 2;
+
+	private static final byte TYPE_INT = 3;
+
+	private static final byte TYPE_FLOAT = 4;
+
+	private static final byte TYPE_DOUBLE = 5;
+
+	private static final Map<Path, PlaneDiskCache> INSTANCES = new HashMap<>();
+
+	private final Path m_dir;
+
+	/** maximal number of bytes on disk, changes with the latest user. */
+	private volatile long m_maxBytes;
+
+	/** file name to file size, in access order. */
+	private final LinkedHashMap<String, Long> m_entries = new LinkedHashMap<>(
+			16, 0.75f, true);
+
+	/** sum of the file sizes in {@link #m_entries}. */
+	private long m_size;
+
+	private PlaneDiskCache(final Path dir, final long maxBytes)
+			throws IOException {
+		m_dir = dir;
+		m_maxBytes = maxBytes;
+		Files.createDirectories(dir);
+
+		// restore the access order of earlier runs from the file times
+		final List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*"
+				+ SUFFIX)) {
+			for (final Path file : stream) {
+				files.add(file);
+			}
+		}
+		final Map<Path, Long> times = new HashMap<>();
+		for (final Path file : files) {
+			times.put(file, Files.getLastModifiedTime(file).toMillis());
+		}
+		files.sort((a, b) -> Long.compare(times.get(a), times.get(b)));
+		for (final Path file : files) {
+			final long size = Files.size(file);
+			m_entries.put(file.getFileName().toString(), size);
+			m_size += size;
+		}
+		evict();
+	}
+
+	/**
+	 * @param dir
+	 *            the directory holding the cached planes
+	 * @param maxBytes
+	 *            maximal size of the cache on disk
+	 * @return the cache of the directory
+	 * @throws IOException
+	 *             if the directory cannot be created or read
+	 */
+	public static PlaneDiskCache getInstance(final Path dir,
+			final long maxBytes) throws IOException {
+		final Path key = dir.toAbsolutePath().normalize();
+		synchronized (INSTANCES) {
+			PlaneDiskCache cache = INSTANCES.get(key);
+			if (cache == null) {
+				cache = new PlaneDiskCache(key, maxBytes);
+				INSTANCES.put(key, cache);
+			} else if (cache.m_maxBytes != maxBytes) {
+				cache.m_maxBytes = maxBytes;
+				cache.evictSynchronized();
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * builds the key of a plane. All parts that change the loaded pixels are
+	 * included.
+	 *
+	 * @param server
+	 *            host and port of the OMERO server
+	 * @param pixelID
+	 *            the OMERO pixel ID
+	 * @param z
+	 *            Z index of the plane
+	 * @param c
+	 *            channel of the plane
+	 * @param t
+	 *            time point of the plane
+	 * @param x
+	 *            left border of the loaded box
+	 * @param y
+	 *            top border of the loaded box
+	 * @param width
+	 *            width of the loaded box
+	 * @param height
+	 *            height of the loaded box
+	 * @param level
+	 *            the resolution level, -1 for full resolution
+	 * @param step
+	 *            the subsampling step
+	 * @return the key of the plane
+	 */
+	public static String key(final String server, final long pixelID,
+			final int z, final int c, final int t, final int x, final int y,
+			final int width, final int height, final int level, final int step) {
+		final String key = server + "_" + pixelID + "_z" + z + "_c" + c + "_t"
+				+ t + "_" + x + "_" + y + "_" + width + "x" + height + "_r"
+				+ level + "_s" + step;
+		return key.replaceAll("[^A-Za-z0-9._-]", "_");
+	}
+
+	/**
+	 * @param key
+	 *            the key of the plane
+	 * @param updateTime
+	 *            the current update time of the image
+	 * @return the cached plane or null if it is not cached or outdated
+	 */
+	public ArrayDataAccess<?> get(final String key, final long updateTime) {
+		final String name = key + SUFFIX;
+		synchronized (this) {
+			if (m_entries.get(name) == null) {
+				return null;
+			}
+		}
+		final Path file = m_dir.resolve(name);
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.READ)) {
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			readFully(channel, header);
+			header.flip();
+			if (header.getInt() != MAGIC) {
+				throw new IOException("not a plane file");
+			}
+			if (header.getLong() != updateTime) {
+				// the image has been modified
+				remove(name);
+				return null;
+			}
+			final byte type = header.get();
+			final int length = header.getInt();
+			final ByteBuffer data = ByteBuffer.allocate((int) (channel.size()
+					- HEADER_SIZE));
+			readFully(channel, data);
+			data.flip();
+			Files.setLastModifiedTime(file,
+					FileTime.fromMillis(System.currentTimeMillis()));
+			return decode(type, length, data);
+		} catch (final IOException | RuntimeException e) {
+			LOGGER.debug("dropping unreadable cached plane " + file, e);
+			remove(name);
+			return null;
+		}
+	}
+
+	/**
+	 * stores a plane, evicting the least recently used planes if the cache
+	 * grows too large. Failures are logged, the cache is only an
+	 * optimization.
+	 *
+	 * @param key
+	 *            the key of the plane
+	 * @param updateTime
+	 *            the current update time of the image
+	 * @param plane
+	 *            the decoded plane
+	 */
+	public void put(final String key, final long updateTime,
+			final ArrayDataAccess<?> plane) {
+		final String name = key + SUFFIX;
+		final ByteBuffer data;
+		try {
+			data = encode(updateTime, plane.getCurrentStorageArray());
+		} catch (final IllegalArgumentException e) {
+			LOGGER.debug("plane type can not be cached", e);
+			return;
+		}
+		if (data.remaining() > m_maxBytes) {
+			return;
+		}
+
+		final Path file = m_dir.resolve(name);
+		Path tmp = null;
+		try {
+			tmp = Files.createTempFile(m_dir, key, ".tmp");
+			try (FileChannel channel = FileChannel.open(tmp,
+					StandardOpenOption.WRITE)) {
+				while (data.hasRemaining()) {
+					channel.write(data);
+				}
+			}
+			// concurrent readers never see a partially written plane
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (final IOException e) {
+			LOGGER.debug("could not cache plane " + file, e);
+			if (tmp != null) {
+				try {
+					Files.deleteIfExists(tmp);
+				} catch (final IOException e1) {
+					// ignore
+				}
+			}
+			return;
+		}
+
+		synchronized (this) {
+			final Long old = m_entries.put(name, (long) data.limit());
+			m_size += data.limit() - (old == null ? 0 : old);
+			evict();
+		}
+	}
+
+	/**
+	 * deletes all cached planes.
+	 */
+	public void clear() {
+		final List<String> names;
+		synchronized (this) {
+			names = new ArrayList<>(m_entries.keySet());
+		}
+		for (final String name : names) {
+			remove(name);
+		}
+	}
+
+	/**
+	 * @return the number of bytes on disk
+	 */
+	public synchronized long getSize() {
+		return m_size;
+	}
+
+	private synchronized void evictSynchronized() {
+		evict();
+	}
+
+	/** deletes the least recently used planes, caller holds the lock. */
+	private void evict() {
+		final Iterator<Map.Entry<String, Long>> it = m_entries.entrySet()
+				.iterator();
+		while ((m_size > m_maxBytes) && it.hasNext()) {
+			final Map.Entry<String, Long> eldest = it.next();
+			it.remove();
+			m_size -= eldest.getValue();
+			delete(m_dir.resolve(eldest.getKey()));
+		}
+	}
+
+	private void remove(final String name) {
+		synchronized (this) {
+			final Long size = m_entries.remove(name);
+			if (size != null) {
+				m_size -= size;
+			}
+		}
+		delete(m_dir.resolve(name));
+	}
+
+	private static void delete(final Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (final IOException e) {
+			LOGGER.debug("could not delete cached plane " + file, e);
+		}
+	}
+
+	private static void readFully(final FileChannel channel,
+			final ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new IOException("truncated plane file");
+			}
+		}
+	}
+
+	private static ByteBuffer encode(final long updateTime, final Object array) {
+		final ByteBuffer buffer;
+		if (array instanceof byte[]) {
+			final byte[] a = (byte[]) array;
+			buffer = header(updateTime, TYPE_BYTE, a.length, a.length);
+			buffer.put(a);
+		} else if (array instanceof short[]) {
+			final short[] a = (short[]) array;
+			buffer = header(updateTime, TYPE_SHORT, a.length, a.length * 2);
+			buffer.asShortBuffer().put(a);
+		} else if (array instanceof int[]) {
+			final int[] a = (int[]) array;
+			buffer = header(updateTime, TYPE_INT, a.length, a.length * 4);
+			buffer.asIntBuffer().put(a);
+		} else if (array instanceof float[]) {
+			final float[] a = (float[]) array;
+			buffer = header(updateTime, TYPE_FLOAT, a.length, a.length * 4);
+			buffer.asFloatBuffer().put(a);
+		} else if (array instanceof double[]) {
+			final double[] a = (double[]) array;
+			buffer = header(updateTime, TYPE_DOUBLE, a.length, a.length * 8);
+			buffer.asDoubleBuffer().put(a);
+		} else {
+			throw new IllegalArgumentException("unsupported plane array "
+					+ array.getClass());
+		}
+		buffer.rewind();
+		return buffer;
+	}
+
+	/**
+	 * @return a buffer for the whole file, positioned after the header
+	 */
+	private static ByteBuffer header(final long updateTime, final byte type,
+			final int length, final int dataBytes) {
+		final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + dataBytes);
+		buffer.putInt(MAGIC);
+		buffer.putLong(updateTime);
+		buffer.put(type);
+		buffer.putInt(length);
+		return buffer;
+	}
+
+	private static ArrayDataAccess<?> decode(final byte type,
+			final int length, final ByteBuffer data) throws IOException {
+		switch (type) {
+		case TYPE_BYTE: {
+			final byte[] a = new byte[length];
+			data.get(a);
+			return new ByteArray(a);
+		}
+		case TYPE_SHORT: {
+			final short[] a = new short[length];
+			data.asShortBuffer().get(a);
+			return new ShortArray(a);
+		}
+		case TYPE_INT: {
+			final int[] a = new int[length];
+			data.asIntBuffer().get(a);
+			return new IntArray(a);
+		}
+		case TYPE_FLOAT: {
+			final float[] a = new float[length];
+			data.asFloatBuffer().get(a);
+			return new FloatArray(a);
+		}
+		case TYPE_DOUBLE: {
+			final double[] a = new double[length];
+			data.asDoubleBuffer().get(a);
+			return new DoubleArray(a);
+		}
+		default:
+			throw new IOException("unknown plane type " + type);
+		}
+	}
+}
@@ -48,6 +48,8 @@
  */
 package org.knime.knip.omero.omerojava;
 
+import java.nio.ByteOrder;
+
 import omero.gateway.exception.DSAccessException;
 import omero.gateway.exception.DSOutOfServiceException;
 import omero.gateway.exception.DataSourceException;
@@ -86,6 +88,29 @@ public class GatewayUtilsExcerpt {
 	 */
 	public static Plane1D getPlane1D(final int dimX, final int dimY,
 			final String type, final byte[] rawPlane) throws omero.ServerError {
+		return getPlane1D(dimX, dimY, type, rawPlane, ByteOrder.BIG_ENDIAN);
+	}
+
+	/**
+	 * Extracts a 1D plane from the pixels set this object is working for.
+	 *
+	 * @param dimX
+	 *            size of the x dimension
+	 * @param dimY
+	 *            size of the y dimension
+	 * @param type
+	 *            string identifier of the data type e.g. int8 (constants
+	 *            defined in {@link PixelTypes})
+	 * @param rawPlane
+	 *            The raw bytes of the plane (z,c,t)
+	 * @param byteOrder
+	 *            The byte order of the raw bytes
+	 * @return A plane 1D object that encapsulates the actual plane pixels.
+	 * @throws omero.ServerError
+	 */
+	public static Plane1D getPlane1D(final int dimX, final int dimY,
+			final String type, final byte[] rawPlane,
+			final ByteOrder byteOrder) throws omero.ServerError {
 		if (type == null) {
 			throw new NullPointerException("type is null");
 		}
@@ -93,14 +118,14 @@ public class GatewayUtilsExcerpt {
 			throw new NullPointerException("rawPlane is null");
 		}
 
-		final int bytesPerPixels = getBytesPerPixels(type);
-		final BytesConverter strategy = BytesConverter.getConverter(type);
-		return createPlane1D(dimX, dimY, rawPlane, bytesPerPixels, strategy);
+		// validates the type
+		getBytesPerPixels(type);
+		return createPlane1D(dimX, dimY, rawPlane, type, byteOrder);
 	}
 
 	/**
 	 * Convert the rawPlane data to a Plane1D object which can then convert that
-	 * raw byte data to anytype the caller wants.
+	 * raw byte data to anytype the caller wants. The plane is decoded in bulk.
 	 *
 	 * @param dimX
 	 *            size of the x dimension
@@ -108,10 +133,10 @@ public class GatewayUtilsExcerpt {
 	 *            size of the y dimension
 	 * @param rawPlane
 	 *            The raw bytes of the plane (z,c,t)
-	 * @param bytesPerPixel
-	 *            The number of bytes per pixel.
-	 * @param strategy
-	 *            To transform bytes into pixels values.
+	 * @param type
+	 *            string identifier of the data type
+	 * @param byteOrder
+	 *            The byte order of the raw bytes
 	 * @return A plane 2D object that encapsulates the actual plane pixels.
 	 * @throws DSAccessException
 	 * @throws DSOutOfServiceException
@@ -120,11 +145,11 @@ public class GatewayUtilsExcerpt {
 	 *             pixels source.
 	 */
 	private static Plane1D createPlane1D(final int dimX, final int dimY,
-			final byte[] rawPlane, final int bytesPerPixels,
-			final BytesConverter strategy) throws omero.ServerError {
+			final byte[] rawPlane, final String type,
+			final ByteOrder byteOrder) throws omero.ServerError {
 		final ReadOnlyByteArray array = new ReadOnlyByteArray(rawPlane, 0,
 				rawPlane.length);
-		return new Plane1D(array, dimX, dimY, bytesPerPixels, strategy);
+		return new Plane1D(array, dimX, dimY, type, byteOrder);
 	}
 
 	/**
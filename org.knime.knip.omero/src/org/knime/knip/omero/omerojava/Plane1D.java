@@ -23,6 +23,12 @@
 package org.knime.knip.omero.omerojava;
 
 //Java imports
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 
 //Third-party libraries
 
@@ -57,16 +63,34 @@ public class Plane1D {
 	private final BytesConverter strategy;
 
 	/**
-	 * Determines the offset value.
+	 * The pixels type, used to select a bulk decoding routine. If
+	 * <code>null</code> every pixel is converted by the {@link #strategy}.
+	 */
+	private final String pixelsType;
+
+	/** The byte order of the original data. */
+	private final ByteOrder byteOrder;
+
+	/**
+	 * Converts the raw data.
 	 * 
-	 * @param x
-	 *            The x-coordinate.
-	 * @param y
-	 *            The y-coordinate.
-	 * @return See above.
+	 * @param sizeY
+	 *            The number of pixels along the y-axis.
 	 */
-	private int calculateOffset(final int x, final int y) {
-		return bytesPerPixel * ((sizeX * y) + x);
+	private double[] mappedDataAsDouble(final int sizeY) {
+		final double[] mappedData = new double[sizeX * sizeY];
+
+		// walk source and destination sequentially, row by row
+		int index = 0;
+		int offset = 0;
+		for (int y = 0; y < sizeY; y++) {
+			for (int x = 0; x < sizeX; x++) {
+				mappedData[index++] = strategy.pack(data, offset,
+						bytesPerPixel);
+				offset += bytesPerPixel;
+			}
+		}
+		return mappedData;
 	}
 
 	/**
@@ -75,17 +99,17 @@ public class Plane1D {
 	 * @param sizeY
 	 *            The number of pixels along the y-axis.
 	 */
-	private double[] mappedDataAsDouble(final int sizeY) {
-		double[] mappedData;
-		int index;
-		mappedData = new double[sizeX * sizeY];
+	private float[] mappedDataAsFloat(final int sizeY) {
+		final float[] mappedData = new float[sizeX * sizeY];
 
-		int offset;
-		for (int x = 0; x < sizeX; x++) {
-			for (int y = 0; y < sizeY; y++) {
-				offset = calculateOffset(x, y);
-				index = (sizeX * y) + x;
-				mappedData[index] = strategy.pack(data, offset, bytesPerPixel);
+		// walk source and destination sequentially, row by row
+		int index = 0;
+		int offset = 0;
+		for (int y = 0; y < sizeY; y++) {
+			for (int x = 0; x < sizeX; x++) {
+				mappedData[index++] = (float) strategy.pack(data, offset,
+						bytesPerPixel);
+				offset += bytesPerPixel;
 			}
 		}
 		return mappedData;
@@ -98,17 +122,16 @@ public class Plane1D {
 	 *            The number of pixels along the y-axis.
 	 */
 	private long[] mappedDataAsLong(final int sizeY) {
-		long[] mappedData;
-		int index;
-		mappedData = new long[sizeX * sizeY];
-
-		int offset;
-		for (int x = 0; x < sizeX; x++) {
-			for (int y = 0; y < sizeY; y++) {
-				offset = calculateOffset(x, y);
-				index = (sizeX * y) + x;
-				mappedData[index] = (long) strategy.pack(data, offset,
+		final long[] mappedData = new long[sizeX * sizeY];
+
+		// walk source and destination sequentially, row by row
+		int index = 0;
+		int offset = 0;
+		for (int y = 0; y < sizeY; y++) {
+			for (int x = 0; x < sizeX; x++) {
+				mappedData[index++] = (long) strategy.pack(data, offset,
 						bytesPerPixel);
+				offset += bytesPerPixel;
 			}
 		}
 		return mappedData;
@@ -121,18 +144,16 @@ public class Plane1D {
 	 *            The number of pixels along the y-axis.
 	 */
 	private int[] mappedDataAsInt(final int sizeY) {
-		int[] mappedData;
-		int index;
-		mappedData = new int[sizeX * sizeY];
-
-		int offset;
-		for (int x = 0; x < sizeX; x++) {
-			for (int y = 0; y < sizeY; y++) {
-				offset = calculateOffset(x, y);
-				index = (sizeX * y) + x;
-				mappedData[index] = (int) strategy.pack(data, offset,
-						bytesPerPixel);
+		final int[] mappedData = new int[sizeX * sizeY];
 
+		// walk source and destination sequentially, row by row
+		int index = 0;
+		int offset = 0;
+		for (int y = 0; y < sizeY; y++) {
+			for (int x = 0; x < sizeX; x++) {
+				mappedData[index++] = (int) strategy.pack(data, offset,
+						bytesPerPixel);
+				offset += bytesPerPixel;
 			}
 		}
 		return mappedData;
@@ -145,17 +166,16 @@ public class Plane1D {
 	 *            The number of pixels along the y-axis.
 	 */
 	private short[] mappedDataAsShort(final int sizeY) {
-		short[] mappedData;
-		int index;
-		mappedData = new short[sizeX * sizeY];
-
-		int offset;
-		for (int x = 0; x < sizeX; x++) {
-			for (int y = 0; y < sizeY; y++) {
-				offset = calculateOffset(x, y);
-				index = (sizeX * y) + x;
-				mappedData[index] = (short) strategy.pack(data, offset,
+		final short[] mappedData = new short[sizeX * sizeY];
+
+		// walk source and destination sequentially, row by row
+		int index = 0;
+		int offset = 0;
+		for (int y = 0; y < sizeY; y++) {
+			for (int x = 0; x < sizeX; x++) {
+				mappedData[index++] = (short) strategy.pack(data, offset,
 						bytesPerPixel);
+				offset += bytesPerPixel;
 			}
 		}
 		return mappedData;
@@ -168,22 +188,359 @@ public class Plane1D {
 	 *            The number of pixels along the y-axis.
 	 */
 	private byte[] mappedDataAsByte(final int sizeY) {
-		byte[] mappedData;
-		int index;
-		mappedData = new byte[sizeX * sizeY];
-
-		int offset;
-		for (int x = 0; x < sizeX; x++) {
-			for (int y = 0; y < sizeY; y++) {
-				offset = calculateOffset(x, y);
-				index = (sizeX * y) + x;
-				mappedData[index] = (byte) strategy.pack(data, offset,
+		final byte[] mappedData = new byte[sizeX * sizeY];
+
+		// walk source and destination sequentially, row by row
+		int index = 0;
+		int offset = 0;
+		for (int y = 0; y < sizeY; y++) {
+			for (int x = 0; x < sizeX; x++) {
+				mappedData[index++] = (byte) strategy.pack(data, offset,
 						bytesPerPixel);
+				offset += bytesPerPixel;
 			}
 		}
 		return mappedData;
 	}
 
+	/**
+	 * Makes sure that the original data holds <code>n</code> pixels. Throws an
+	 * exception if this constraint is not met.
+	 * 
+	 * @param n
+	 *            The number of pixels.
+	 */
+	private void checkLength(final int n) {
+		if (data.length < (n * bytesPerPixel)) {
+			throw new ArrayIndexOutOfBoundsException("Index not in [0, "
+					+ data.length + "): " + ((n * bytesPerPixel) - 1) + ".");
+		}
+	}
+
+	/**
+	 * Wraps the original data, positioned at the first byte of the plane.
+	 * 
+	 * @return See above.
+	 */
+	private ByteBuffer wrapData() {
+		return ByteBuffer.wrap(data.base, data.offset, data.length).order(
+				byteOrder);
+	}
+
+	/**
+	 * Converts the raw data in one pass, without going through the
+	 * {@link #strategy}.
+	 * 
+	 * @return The converted data or <code>null</code> if there is no bulk
+	 *         routine for the pixels type.
+	 */
+	private double[] bulkDataAsDouble() {
+		final int n = sizeX * sizeY;
+		checkLength(n);
+		final double[] mappedData;
+		switch (pixelsType) {
+		case PixelTypes.INT_8:
+			mappedData = new double[n];
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = data.base[data.offset + i];
+			}
+			return mappedData;
+		case PixelTypes.UINT_8:
+			mappedData = new double[n];
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = data.base[data.offset + i] & 0xFF;
+			}
+			return mappedData;
+		case PixelTypes.INT_16: {
+			mappedData = new double[n];
+			final ShortBuffer buffer = wrapData().asShortBuffer();
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = buffer.get(i);
+			}
+			return mappedData;
+		}
+		case PixelTypes.UINT_16: {
+			mappedData = new double[n];
+			final ShortBuffer buffer = wrapData().asShortBuffer();
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = buffer.get(i) & 0xFFFF;
+			}
+			return mappedData;
+		}
+		case PixelTypes.INT_32: {
+			mappedData = new double[n];
+			final IntBuffer buffer = wrapData().asIntBuffer();
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = buffer.get(i);
+			}
+			return mappedData;
+		}
+		case PixelTypes.UINT_32: {
+			mappedData = new double[n];
+			final IntBuffer buffer = wrapData().asIntBuffer();
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = buffer.get(i) & 0xFFFFFFFFL;
+			}
+			return mappedData;
+		}
+		case PixelTypes.FLOAT: {
+			mappedData = new double[n];
+			final FloatBuffer buffer = wrapData().asFloatBuffer();
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = buffer.get(i);
+			}
+			return mappedData;
+		}
+		case PixelTypes.DOUBLE: {
+			mappedData = new double[n];
+			final DoubleBuffer buffer = wrapData().asDoubleBuffer();
+			buffer.get(mappedData);
+			return mappedData;
+		}
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Converts the raw data in one pass, without going through the
+	 * {@link #strategy}.
+	 * 
+	 * @return The converted data or <code>null</code> if there is no bulk
+	 *         routine for the pixels type.
+	 */
+	private float[] bulkDataAsFloat() {
+		final int n = sizeX * sizeY;
+		checkLength(n);
+		final float[] mappedData;
+		switch (pixelsType) {
+		case PixelTypes.INT_8:
+			mappedData = new float[n];
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = data.base[data.offset + i];
+			}
+			return mappedData;
+		case PixelTypes.UINT_8:
+			mappedData = new float[n];
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = data.base[data.offset + i] & 0xFF;
+			}
+			return mappedData;
+		case PixelTypes.INT_16: {
+			mappedData = new float[n];
+			final ShortBuffer buffer = wrapData().asShortBuffer();
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = buffer.get(i);
+			}
+			return mappedData;
+		}
+		case PixelTypes.UINT_16: {
+			mappedData = new float[n];
+			final ShortBuffer buffer = wrapData().asShortBuffer();
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = buffer.get(i) & 0xFFFF;
+			}
+			return mappedData;
+		}
+		case PixelTypes.INT_32: {
+			mappedData = new float[n];
+			final IntBuffer buffer = wrapData().asIntBuffer();
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = buffer.get(i);
+			}
+			return mappedData;
+		}
+		case PixelTypes.UINT_32: {
+			mappedData = new float[n];
+			final IntBuffer buffer = wrapData().asIntBuffer();
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = buffer.get(i) & 0xFFFFFFFFL;
+			}
+			return mappedData;
+		}
+		case PixelTypes.FLOAT:
+			mappedData = new float[n];
+			wrapData().asFloatBuffer().get(mappedData);
+			return mappedData;
+		case PixelTypes.DOUBLE: {
+			mappedData = new float[n];
+			final DoubleBuffer buffer = wrapData().asDoubleBuffer();
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = (float) buffer.get(i);
+			}
+			return mappedData;
+		}
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Converts the raw data in one pass, without going through the
+	 * {@link #strategy}.
+	 * 
+	 * @return The converted data or <code>null</code> if there is no bulk
+	 *         routine for the pixels type.
+	 */
+	private long[] bulkDataAsLong() {
+		final int n = sizeX * sizeY;
+		checkLength(n);
+		final long[] mappedData;
+		switch (pixelsType) {
+		case PixelTypes.INT_8:
+			mappedData = new long[n];
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = data.base[data.offset + i];
+			}
+			return mappedData;
+		case PixelTypes.UINT_8:
+			mappedData = new long[n];
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = data.base[data.offset + i] & 0xFF;
+			}
+			return mappedData;
+		case PixelTypes.INT_16: {
+			mappedData = new long[n];
+			final ShortBuffer buffer = wrapData().asShortBuffer();
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = buffer.get(i);
+			}
+			return mappedData;
+		}
+		case PixelTypes.UINT_16: {
+			mappedData = new long[n];
+			final ShortBuffer buffer = wrapData().asShortBuffer();
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = buffer.get(i) & 0xFFFF;
+			}
+			return mappedData;
+		}
+		case PixelTypes.INT_32: {
+			mappedData = new long[n];
+			final IntBuffer buffer = wrapData().asIntBuffer();
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = buffer.get(i);
+			}
+			return mappedData;
+		}
+		case PixelTypes.UINT_32: {
+			mappedData = new long[n];
+			final IntBuffer buffer = wrapData().asIntBuffer();
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = buffer.get(i) & 0xFFFFFFFFL;
+			}
+			return mappedData;
+		}
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Converts the raw data in one pass, without going through the
+	 * {@link #strategy}.
+	 * 
+	 * @return The converted data or <code>null</code> if there is no bulk
+	 *         routine for the pixels type.
+	 */
+	private int[] bulkDataAsInt() {
+		final int n = sizeX * sizeY;
+		checkLength(n);
+		final int[] mappedData;
+		switch (pixelsType) {
+		case PixelTypes.INT_8:
+			mappedData = new int[n];
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = data.base[data.offset + i];
+			}
+			return mappedData;
+		case PixelTypes.UINT_8:
+			mappedData = new int[n];
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = data.base[data.offset + i] & 0xFF;
+			}
+			return mappedData;
+		case PixelTypes.INT_16: {
+			mappedData = new int[n];
+			final ShortBuffer buffer = wrapData().asShortBuffer();
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = buffer.get(i);
+			}
+			return mappedData;
+		}
+		case PixelTypes.UINT_16: {
+			mappedData = new int[n];
+			final ShortBuffer buffer = wrapData().asShortBuffer();
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = buffer.get(i) & 0xFFFF;
+			}
+			return mappedData;
+		}
+		case PixelTypes.INT_32:
+		case PixelTypes.UINT_32:
+			mappedData = new int[n];
+			wrapData().asIntBuffer().get(mappedData);
+			return mappedData;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Converts the raw data in one pass, without going through the
+	 * {@link #strategy}.
+	 * 
+	 * @return The converted data or <code>null</code> if there is no bulk
+	 *         routine for the pixels type.
+	 */
+	private short[] bulkDataAsShort() {
+		final int n = sizeX * sizeY;
+		checkLength(n);
+		final short[] mappedData;
+		switch (pixelsType) {
+		case PixelTypes.INT_8:
+			mappedData = new short[n];
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = data.base[data.offset + i];
+			}
+			return mappedData;
+		case PixelTypes.UINT_8:
+			mappedData = new short[n];
+			for (int i = 0; i < n; i++) {
+				mappedData[i] = (short) (data.base[data.offset + i] & 0xFF);
+			}
+			return mappedData;
+		case PixelTypes.INT_16:
+		case PixelTypes.UINT_16:
+			mappedData = new short[n];
+			wrapData().asShortBuffer().get(mappedData);
+			return mappedData;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Converts the raw data in one pass, without going through the
+	 * {@link #strategy}.
+	 * 
+	 * @return The converted data or <code>null</code> if there is no bulk
+	 *         routine for the pixels type.
+	 */
+	private byte[] bulkDataAsByte() {
+		final int n = sizeX * sizeY;
+		checkLength(n);
+		switch (pixelsType) {
+		case PixelTypes.INT_8:
+		case PixelTypes.UINT_8:
+			final byte[] mappedData = new byte[n];
+			System.arraycopy(data.base, data.offset, mappedData, 0, n);
+			return mappedData;
+		default:
+			return null;
+		}
+	}
+
 	/**
 	 * Creates a new intance.
 	 * 
@@ -206,6 +563,44 @@ public class Plane1D {
 		this.strategy = strategy;
 		this.sizeX = sizeX;
 		this.sizeY = sizeY;
+		this.pixelsType = null;
+		this.byteOrder = ByteOrder.BIG_ENDIAN;
+	}
+
+	/**
+	 * Creates a new intance that decodes whole planes at once, using a
+	 * routine specialized for the pixels type and byte order. Conversions for
+	 * which no such routine exists fall back to the per-pixel
+	 * {@link BytesConverter}. Use
+	 * {@link #Plane1D(ReadOnlyByteArray, int, int, int, BytesConverter)} to
+	 * always convert pixel by pixel, e.g. as a reference for correctness
+	 * checks.
+	 * 
+	 * @param data
+	 *            The array of byte.
+	 * @param sizeX
+	 *            The number of pixels along the x-axis.
+	 * @param sizeY
+	 *            The number of pixels along the y-axis.
+	 * @param pixelsType
+	 *            The pixels type, one of the constants defined in
+	 *            {@link PixelTypes}.
+	 * @param byteOrder
+	 *            The byte order of the data.
+	 */
+	public Plane1D(final ReadOnlyByteArray data, final int sizeX,
+			final int sizeY, final String pixelsType, final ByteOrder byteOrder) {
+		if (!PixelTypes.pixelMap.containsKey(pixelsType)) {
+			throw new IllegalArgumentException(pixelsType
+					+ " is not a valid PixelsType.");
+		}
+		this.bytesPerPixel = PixelTypes.pixelMap.get(pixelsType);
+		this.data = data;
+		this.strategy = BytesConverter.getConverter(pixelsType);
+		this.sizeX = sizeX;
+		this.sizeY = sizeY;
+		this.pixelsType = pixelsType;
+		this.byteOrder = byteOrder;
 	}
 
 	/**
@@ -217,9 +612,30 @@ public class Plane1D {
 	 * @return see above.
 	 */
 	public double[] getPixelsArrayAsDouble() {
+		if (pixelsType != null) {
+			final double[] mappedData = bulkDataAsDouble();
+			if (mappedData != null) {
+				return mappedData;
+			}
+		}
 		return mappedDataAsDouble(sizeY);
 	}
 
+	/**
+	 * Return the pixels array of the mapped data.
+	 * 
+	 * @return see above.
+	 */
+	public float[] getPixelsArrayAsFloat() {
+		if (pixelsType != null) {
+			final float[] mappedData = bulkDataAsFloat();
+			if (mappedData != null) {
+				return mappedData;
+			}
+		}
+		return mappedDataAsFloat(sizeY);
+	}
+
 	/**
 	 * Return the pixels array of the mapped data.
 	 * 
@@ -229,6 +645,12 @@ public class Plane1D {
 	 * @return see above.
 	 */
 	public long[] getPixelsArrayAsLong() {
+		if (pixelsType != null) {
+			final long[] mappedData = bulkDataAsLong();
+			if (mappedData != null) {
+				return mappedData;
+			}
+		}
 		return mappedDataAsLong(sizeY);
 	}
 
@@ -241,6 +663,12 @@ public class Plane1D {
 	 * @return see above.
 	 */
 	public int[] getPixelsArrayAsInt() {
+		if (pixelsType != null) {
+			final int[] mappedData = bulkDataAsInt();
+			if (mappedData != null) {
+				return mappedData;
+			}
+		}
 		return mappedDataAsInt(sizeY);
 	}
 
@@ -253,6 +681,12 @@ public class Plane1D {
 	 * @return see above.
 	 */
 	public short[] getPixelsArrayAsShort() {
+		if (pixelsType != null) {
+			final short[] mappedData = bulkDataAsShort();
+			if (mappedData != null) {
+				return mappedData;
+			}
+		}
 		return mappedDataAsShort(sizeY);
 	}
 
@@ -265,6 +699,12 @@ public class Plane1D {
 	 * @return see above.
 	 */
 	public byte[] getPixelsArrayAsByte() {
+		if (pixelsType != null) {
+			final byte[] mappedData = bulkDataAsByte();
+			if (mappedData != null) {
+				return mappedData;
+			}
+		}
 		return mappedDataAsByte(sizeY);
 	}
 